@@ -1,4 +1,3 @@
-<<<<<<< HEAD
 import model.*;
 import output.*;
 import parsing.*;
@@ -12,31 +11,13 @@ public class Main {
 		//AbstractXMLParser parser = new DukeXMLParser();
 		//parser.loadFile("http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/dukecal.xml");
 		
-		List<AbstractXMLParser> parsers = new ArrayList<AbstractXMLParser>();
+		ParserRegistry parsers = new ParserRegistry();
+		String filename = "http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/NFL.xml";
+		//String filename = "http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/DukeBasketBall.xml";
+		//String filename = "http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/googlecal.xml";
+		//String filename = "http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/dukecal.xml";
 		
-		parsers.add(new DukeBasketBallXMLParser());
-		parsers.add(new DukeXMLParser());
-		parsers.add(new TVXMLParser());
-		parsers.add(new NFLXMLParser());
-		parsers.add(new GoogleXMLParser());
-
-		
-		List<Event> listOfEvents = null;
-		for(AbstractXMLParser parser : parsers){
-			try{
-				//parser.loadFile("http://duke.edu/~jjh38/tv.xml");
-//				listOfEvents = parser.processEvents("http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/DukeBasketBall.xml");
-				//listOfEvents = parser.processEvents("http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/googlecal.xml");
-				listOfEvents = parser.processEvents("http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/NFL.xml");
-
-				//listOfEvents = parser.processEvents("http://www.cs.duke.edu/courses/spring12/cps108/assign/02_tivoo/data/dukecal.xml");
-			} catch (ParserException e){
-				System.err.println(e.getMessage());
-				continue;
-			}
-			if(listOfEvents != null && listOfEvents.size() != 0)
-				break;
-		}
+		List<Event> listOfEvents = parsers.getParser(filename).processEvents(filename);
 		AbstractFilter filter = new KeywordFilter();
 		List<Event> newList = filter.filter(listOfEvents, "");               
     	AbstractHtmlOutputter ho = new WeekDetailOutputter();
@@ -1,19 +1,37 @@
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+
 import javax.swing.JFrame;
 
 public class TivooMain {
 	// convenience constants
     public static final String TITLE = "Tivoo GUI";
     public static final String DEFAULT_START_PAGE = "";
+    public static final File SNAPSHOT = new File("tivoo.snapshot");
 
 
     public static void main (String[] args)
     {
     	// create program specific components
-        TivooModel model = new TivooModel();
+        final TivooModel model = new TivooModel();
+        // pick up where the last run left off if its files are unchanged
+        if (SNAPSHOT.exists())
+        	model.loadSnapshot(SNAPSHOT);
         TivooViewer display = new TivooViewer(model);
         // create container that will work with Window manager
         JFrame frame = new JFrame(TITLE);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter(){
+        	public void windowClosing (WindowEvent e){
+        		try{
+        			model.saveSnapshot(SNAPSHOT);
+        		} catch (IOException ex){
+        			ex.printStackTrace();
+        		}
+        	}
+        });
         // add our user interface components to Frame and show it
         frame.getContentPane().add(display);
         frame.pack();
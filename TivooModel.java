@@ -1,19 +1,53 @@
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.*;
+import java.util.function.IntPredicate;
 
+import org.jdom.Document;
 import org.joda.time.DateTime;
 
 import parsing.*;
 import output.*;
 import filtering.*;
 import model.Event;
+import model.EventCache;
+import model.EventSnapshot;
+import model.EventStore;
+import model.FileFingerprint;
+import model.RecurrenceExpander;
+import model.PropertyIndex;
+import model.QueryCache;
+import model.StartTimeIndex;
+import model.TrigramIndex;
 
 public class TivooModel {
 	
-	private List<Event> myEvents;
-	private List<Event> myFilteredEvents;
+	/**
+	 * Default number of bytes of parsed events kept for reloading files
+	 */
+	public static final long DEFAULT_CACHE_BUDGET = 64L * 1024 * 1024;
+	
+	/**
+	 * Default number of recent queries whose results are kept
+	 */
+	public static final int DEFAULT_QUERY_CACHE_SIZE = 16;
+	
+	private EventStore myEvents;
+	private FilterPipeline myPipeline;
+	private DateTime myWindowFrom;
+	private DateTime myWindowTo;
+	private List<String> myQuery;
+	private QueryCache myQueries;
+	private EventStore myPageEvents;
+	private long myPageVersion;
+	private StartTimeIndex myStartTimes;
+	private TrigramIndex myKeywords;
+	private PropertyIndex myProperties;
 	private String myURL;
-	private List<AbstractXMLParser> myParsers;
+	private ParserRegistry myParsers;
+	private EventCache myCache;
+	private boolean myHashContents;
+	private List<FileFingerprint> mySources;
 	private String myKeyword;
 	private String myLocation;
 	private DateTime myStartTime;
@@ -27,11 +61,18 @@ public class TivooModel {
      */
     public TivooModel ()
     {
-    	myEvents = new ArrayList<Event>();
-    	myFilteredEvents = new ArrayList<Event>();
+    	myEvents = new EventStore();
+    	myPipeline = new FilterPipeline();
+    	myQuery = new ArrayList<String>();
+    	myQueries = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+    	myStartTimes = new StartTimeIndex(myEvents);
+    	myKeywords = new TrigramIndex(myEvents);
+    	myProperties = new PropertyIndex(myEvents);
     	myURL = "";
-    	myParsers = new ArrayList<AbstractXMLParser>();
-    	initializeParsers();
+    	myParsers = new ParserRegistry();
+    	myParsers.setParallel(true);
+    	myCache = new EventCache(DEFAULT_CACHE_BUDGET);
+    	mySources = new ArrayList<FileFingerprint>();
     	myKeyword = "";
     	myLocation = "";
     	myStartTime = new DateTime();
@@ -39,91 +80,377 @@ public class TivooModel {
     	myActor = "";
     }
     
-    /**
-     * Adds available parsers to the list to check
-     */
-    public void initializeParsers(){
-    	myParsers.add(new DukeBasketBallXMLParser());
-    	myParsers.add(new DukeXMLParser());
-    	myParsers.add(new GoogleXMLParser());
-    	myParsers.add(new NFLXMLParser());
-    	myParsers.add(new TVXMLParser());
-    }
-    
     /**
      * Parses a file for events to add
      * @param file The file to parse
      */
     public void parseFile(File file){
-    	List<Event> events = null;
-    	for(AbstractXMLParser parser : myParsers){
-			try{
-				events = parser.processEvents(file.getPath());
-			} catch (ParserException e){
-				System.err.println(e.getMessage());
-				continue;
-			}
-			if(events != null && events.size() != 0)
-				break;
-		}
+    	List<Event> events;
+    	try{
+    		events = loadEvents(file, new StringPool());
+    	} catch (ParserException e){
+    		System.err.println(e.getMessage());
+    		return;
+    	}
     	
+    	addEvents(file, events);
+    }
+    
+    /**
+     * Adds newly loaded events and remembers which file they came from
+     * @param file The file the events were loaded from
+     * @param events The events to add
+     */
+    private void addEvents(File file, List<Event> events){
     	myEvents.addAll(events);
-    	myFilteredEvents.addAll(events);
+    	myQueries.clear();
+    	myStartTimes.update();
+    	myKeywords.update();
+    	myProperties.update();
+    	try{
+    		mySources.add(FileFingerprint.of(file, myHashContents));
+    	} catch (IOException e){
+    		System.err.println("Could not fingerprint " + file + ": " + e.getMessage());
+    	}
+    }
+    
+    /**
+     * Parses several files at once on a pool with one thread per core.  The
+     * events are added in the order the files were given, no matter which
+     * file finishes first
+     * @param files The files to parse
+     * @return How long each file took and whether it failed, in the same
+     * order as the files
+     */
+    public List<LoadResult> parseFiles(Collection<File> files){
+    	List<LoadResult> results = new ArrayList<LoadResult>();
+    	if(files.isEmpty())
+    		return results;
+    	int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+    	ExecutorService pool = Executors.newFixedThreadPool(threads);
+    	try{
+    		List<Future<LoadResult>> pending = new ArrayList<Future<LoadResult>>();
+    		for(final File file : files){
+    			pending.add(pool.submit(new Callable<LoadResult>(){
+    				public LoadResult call(){
+    					return timedLoad(file);
+    				}
+    			}));
+    		}
+    		for(Future<LoadResult> future : pending){
+    			LoadResult result = waitFor(future);
+    			if(result.myEvents != null){
+    				addEvents(result.myFile, result.myEvents);
+    				result.myEvents = null;
+    			}
+    			results.add(result);
+    		}
+    	} finally {
+    		pool.shutdown();
+    	}
+    	return results;
+    }
+    
+    /**
+     * Loads one file for parseFiles.  Parsers keep no per-event state, so
+     * the workers can share the model's parsers; each file gets its own
+     * string pool
+     */
+    private LoadResult timedLoad(File file){
+    	long start = System.nanoTime();
+    	StringPool strings = new StringPool();
+    	try{
+    		List<Event> events = loadEvents(file, strings);
+    		return new LoadResult(file, events, System.nanoTime() - start, strings, null);
+    	} catch (RuntimeException e){
+    		return new LoadResult(file, null, System.nanoTime() - start, strings, e);
+    	}
+    }
+    
+    private LoadResult waitFor(Future<LoadResult> future){
+    	try{
+    		return future.get();
+    	} catch (InterruptedException e){
+    		Thread.currentThread().interrupt();
+    		throw new RuntimeException(e);
+    	} catch (ExecutionException e){
+    		throw new RuntimeException(e.getCause());
+    	}
+    }
+    
+    /**
+     * Returns the events of the file from the cache if this version of the
+     * file has been loaded before, and parses it otherwise
+     * @param file The file to load
+     * @param strings Shares repeated strings among the parsed events
+     * @return The events in the file
+     */
+    private List<Event> loadEvents(File file, StringPool strings){
+    	FileFingerprint fingerprint;
+    	try{
+    		fingerprint = FileFingerprint.of(file, myHashContents);
+    	} catch (IOException e){
+    		return parseEvents(file, strings);
+    	}
+    	List<Event> events = myCache.get(fingerprint);
+    	if(events == null){
+    		events = parseEvents(file, strings);
+    		myCache.put(fingerprint, events);
+    	}
+    	return events;
+    }
+    
+    /**
+     * Parses the file once and offers the document to each candidate parser
+     * until one of them finds events in it
+     * @param file The file to parse
+     * @param strings Shares repeated strings among the parsed events
+     * @return The events found, empty if no candidate found any
+     */
+    private List<Event> parseEvents(File file, StringPool strings){
+    	String path = file.getPath();
+    	List<AbstractXMLParser> candidates = myParsers.getCandidates(path);
+    	Document doc = XMLSource.buildDocument(path);
+    	ParserException failure = null;
+    	for(AbstractXMLParser parser : candidates){
+    		try{
+    			List<Event> events = parser.processEvents(doc, strings);
+    			if(!events.isEmpty())
+    				return events;
+    		} catch (ParserException e){
+    			failure = e;
+    		}
+    	}
+    	if(failure != null)
+    		throw failure;
+    	return new ArrayList<Event>();
     }
     
     /**
      * Clears the internal list of events
      */
     public void startOver(){
+    	mySources.clear();
     	myEvents.clear();
-    	myFilteredEvents.clear();
+    	myQueries.clear();
+    	myPageEvents = null;
+    	clearFilters();
+    	myStartTimes.update();
+    	myKeywords.update();
+    	myProperties.update();
+    }
+    
+    /**
+     * Saves all loaded events, and the files they came from, so a later run
+     * can reload them without parsing
+     * @param snapshot The file to write
+     */
+    public void saveSnapshot(File snapshot) throws IOException{
+    	EventSnapshot.save(snapshot, myEvents.getEvents(), mySources);
     }
     
     /**
-     * Applies the keyword filter to the internal list
+     * Replaces the loaded events with those in a snapshot, unless any of
+     * the files the snapshot was made from has changed since
+     * @param snapshot The file written by saveSnapshot
+     * @return Whether the snapshot was loaded
+     */
+    public boolean loadSnapshot(File snapshot){
+    	EventSnapshot saved;
+    	try{
+    		saved = EventSnapshot.load(snapshot);
+    	} catch (IOException e){
+    		System.err.println("Could not read " + snapshot + ": " + e.getMessage());
+    		return false;
+    	} catch (RuntimeException e){
+    		System.err.println("Corrupt snapshot " + snapshot + ": " + e);
+    		return false;
+    	}
+    	if(saved == null)
+    		return false;
+    	startOver();
+    	myEvents.addAll(saved.getEvents());
+    	myStartTimes.update();
+    	myKeywords.update();
+    	myProperties.update();
+    	mySources.addAll(saved.getSources());
+    	return true;
+    }
+    
+    /**
+     * Adds the keyword filter to the filters run by generate
      * @param keyword The keyword for which to filter
      */
     public void applyKeywordFilter(){
-    	AbstractFilter filter = new KeywordFilter();
-    	myFilteredEvents = filter.filter(myFilteredEvents, myKeyword);
+    	final String keyword = myKeyword;
+    	myQuery.add("keyword=" + keyword);
+    	myPipeline.add("keyword", new KeywordFilter().asIdPredicate(myEvents, keyword),
+    	        new FilterPipeline.CandidateSource(){
+    		public int estimate(){
+    			return -1;
+    		}
+    		public int[] candidates(){
+    			int[] ids = myKeywords.idsContaining(keyword);
+    			if(ids != null)
+    				return ids;
+    			AbstractFilter filter = new KeywordFilter();
+    			filter.setParallel(true);
+    			return filter.matchingIds(myEvents, keyword);
+    		}
+    	});
     }
     
     /**
-     * Applies the location filter to the internal list
+     * Adds the location filter to the filters run by generate
      * @param location The location for which to filter
      */
     public void applyLocationFilter(){
-    	AbstractFilter filter = new LocationFilter();
-    	myFilteredEvents = filter.filter(myFilteredEvents, myLocation);
+    	myQuery.add("location=" + myLocation);
+    	myPipeline.add("location", new LocationFilter().asIdPredicate(myEvents, myLocation), null);
     }
     
     /**
-     * Applies the time filter to the internal list
+     * Adds the time filter to the filters run by generate.  Recurring
+     * series pass this stage and are replaced by their occurrences in the
+     * range when the result is built
      * @param dt1 Beginning time range
      * @param dt2 Ending time range
      */
     public void applyTimeFilter(){
-    	AbstractFilter filter = new TimeFilter();
-    	myFilteredEvents = filter.filter(myFilteredEvents, myStartTime, myEndTime);
+    	final long from = myStartTime.getMillis();
+    	final long to = myEndTime.getMillis();
+    	myQuery.add("time=" + from + ".." + to);
+    	if(myWindowFrom == null || myStartTime.isAfter(myWindowFrom))
+    		myWindowFrom = myStartTime;
+    	if(myWindowTo == null || myEndTime.isBefore(myWindowTo))
+    		myWindowTo = myEndTime;
+    	final BitSet series = recurringSeries();
+    	final IntPredicate inRange = new TimeFilter().asIdPredicate(myEvents, myStartTime, myEndTime);
+    	myPipeline.add("time", new IntPredicate(){
+    		public boolean test(int id){
+    			return inRange.test(id) || series.get(id);
+    		}
+    	}, new FilterPipeline.CandidateSource(){
+    		public int estimate(){
+    			return myStartTimes.countInRange(from, to) + series.cardinality();
+    		}
+    		public int[] candidates(){
+    			return EventBitmap.of(myStartTimes.idsInRange(from, to)).or(
+    			        EventBitmap.of(myStartTimes.getRecurringIds())).toArray();
+    		}
+    	});
     }
     
     /**
-     * Applies the tv actor filter to the internal list
+     * Adds the tv actor filter to the filters run by generate
      * @param actor Name of the actor for whom to filter
      */
     public void applyTVActorFilter(){
-    	AbstractFilter filter = new TVActorFilter();
-    	myFilteredEvents = filter.filter(myFilteredEvents, myActor);
+    	final String actor = myActor;
+    	myQuery.add("actor=" + actor);
+    	myPipeline.add("actor", new TVActorFilter().asIdPredicate(myEvents, actor),
+    	        new FilterPipeline.CandidateSource(){
+    		public int estimate(){
+    			return myProperties.countWith(TVActorFilter.ACTOR, actor);
+    		}
+    		public int[] candidates(){
+    			return myProperties.idsWith(TVActorFilter.ACTOR, actor);
+    		}
+    	});
     }
     
     /**
-     * Creates the html page and sets the url to that page
+     * Runs the filters applied since the last generate in one pass over
+     * the loaded events, creates the html page of the events passing all
+     * of them and sets the url to that page.  The same filters applied to
+     * the same events are answered from the query cache, and the page is
+     * only rewritten if its events differ from the last page's.  With no
+     * filters the page shows the loaded events themselves, which keep
+     * changing, so they are not cached
      */
     public void generate(){
-    	AbstractHtmlOutputter out = new SortedListOutputter();
-    	myURL = out.writeEvents(myFilteredEvents);
-    	myFilteredEvents.clear();
-    	myFilteredEvents.addAll(myEvents);
+    	long version = myEvents.getVersion();
+    	EventStore events = myPipeline.isEmpty() ? myEvents
+    	        : myQueries.get(myQuery, version);
+    	if(events == null){
+    		events = filteredEvents();
+    		myQueries.put(myQuery, version, events);
+    	}
+    	if(events != myPageEvents || version != myPageVersion || myURL.isEmpty()){
+    		AbstractHtmlOutputter out = new SortedListOutputter();
+    		myURL = out.writeEvents(events.getEvents());
+    		myPageEvents = events;
+    		myPageVersion = version;
+    	}
+    	clearFilters();
+    }
+    
+    private void clearFilters(){
+    	myQuery.clear();
+    	myPipeline.clear();
+    	myWindowFrom = null;
+    	myWindowTo = null;
+    }
+    
+    /**
+     * @return The loaded events passing every applied filter, in load
+     * order, with recurring series expanded if a time filter was applied
+     */
+    private EventStore filteredEvents(){
+    	if(myPipeline.isEmpty())
+    		return myEvents;
+    	int[] ids = myPipeline.run(myEvents.size());
+    	if(myWindowFrom == null)
+    		return myEvents.select(ids, ids.length);
+    	BitSet series = recurringSeries();
+    	EventStore events = myEvents.derive();
+    	for(int id : ids){
+    		if(!series.get(id)){
+    			events.addFrom(myEvents, id);
+    			continue;
+    		}
+    		for(Event occurrence : RecurrenceExpander.expand(
+    		        Collections.singletonList(myEvents.getEvent(id)), myWindowFrom, myWindowTo)){
+    			if(!occurrence.getStartTime().isBefore(myWindowFrom)
+    			        && !occurrence.getStartTime().isAfter(myWindowTo))
+    				events.add(occurrence);
+    		}
+    	}
+    	return events;
+    }
+    
+    private BitSet recurringSeries(){
+    	BitSet series = new BitSet();
+    	for(int id : myStartTimes.getRecurringIds())
+    		series.set(id);
+    	return series;
+    }
+    
+    /**
+     * Sets whether files are also recognized by a checksum of their
+     * contents, not just their size and modification time.  Off by default,
+     * since it reads each file once more; turn it on when files may be
+     * replaced without their modification time changing
+     * @param hashContents True to checksum files as they are loaded
+     */
+    public void setHashContents(boolean hashContents){
+    	myHashContents = hashContents;
+    }
+    
+    /**
+     * @return The cache of parsed files, for its hit, miss and eviction
+     * counts and to change its byte budget
+     */
+    public EventCache getEventCache(){
+    	return myCache;
+    }
+    
+    /**
+     * @return The cache of recent query results, for its hit, miss and
+     * eviction counts
+     */
+    public QueryCache getQueryCache(){
+    	return myQueries;
     }
     
     /**
@@ -176,4 +503,71 @@ public class TivooModel {
     	myActor = s;
     }
     
+    /**
+     * Outcome of loading one file through parseFiles
+     */
+    public static class LoadResult {
+    	private File myFile;
+    	private List<Event> myEvents;
+    	private int myEventCount;
+    	private long myNanos;
+    	private long myDuplicateStrings;
+    	private long mySavedBytes;
+    	private Exception myFailure;
+    	
+    	private LoadResult(File file, List<Event> events, long nanos, StringPool strings, Exception failure){
+    		myFile = file;
+    		myEvents = events;
+    		myEventCount = events == null ? 0 : events.size();
+    		myNanos = nanos;
+    		myDuplicateStrings = strings.getDuplicates();
+    		mySavedBytes = strings.getSavedBytes();
+    		myFailure = failure;
+    	}
+    	
+    	public File getFile(){
+    		return myFile;
+    	}
+    	
+    	public int getEventCount(){
+    		return myEventCount;
+    	}
+    	
+    	/**
+    	 * @return Wall clock time spent reading and parsing the file
+    	 */
+    	public long getMillis(){
+    		return TimeUnit.NANOSECONDS.toMillis(myNanos);
+    	}
+    	
+    	/**
+    	 * @return Why the file could not be loaded, null if it loaded
+    	 */
+    	public Exception getFailure(){
+    		return myFailure;
+    	}
+    	
+    	/**
+    	 * @return How many repeated strings were shared instead of kept as
+    	 * copies, zero if the events came from the cache
+    	 */
+    	public long getDuplicateStrings(){
+    		return myDuplicateStrings;
+    	}
+    	
+    	/**
+    	 * @return Estimated heap saved by sharing the repeated strings
+    	 */
+    	public long getSavedBytes(){
+    		return mySavedBytes;
+    	}
+    	
+    	public String toString(){
+    		if(myFailure != null)
+    			return myFile + " failed after " + getMillis() + " ms: " + myFailure.getMessage();
+    		return myFile + " loaded " + myEventCount + " events in " + getMillis() + " ms, sharing "
+    		        + myDuplicateStrings + " repeated strings (~" + mySavedBytes / 1024 + " KB)";
+    	}
+    }
+    
 }
@@ -4,6 +4,7 @@ import java.awt.Dimension;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import javax.swing.event.*;
 import javax.swing.*;
 
@@ -47,16 +48,37 @@ public class TivooViewer extends JPanel{
     }
     
     /**
-     * Prompt for a file with events and then parse them
+     * Prompt for one or more files with events and then parse them
      */
     private void addEvents(){
     	JFileChooser fc = new JFileChooser();
+    	fc.setMultiSelectionEnabled(true);
         
         int returnVal = fc.showOpenDialog(null);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
-            File file = fc.getSelectedFile();
+            File[] files = fc.getSelectedFiles();
             
-            myModel.parseFile(file);
+            int failed = 0;
+            int events = 0;
+            long millis = 0;
+            long duplicates = 0;
+            long savedBytes = 0;
+            StringBuilder failures = new StringBuilder();
+            for (TivooModel.LoadResult result : myModel.parseFiles(Arrays.asList(files))){
+            	if (result.getFailure() != null){
+            		failed++;
+            		failures.append(result).append('\n');
+            	}
+            	events += result.getEventCount();
+            	millis = Math.max(millis, result.getMillis());
+            	duplicates += result.getDuplicateStrings();
+            	savedBytes += result.getSavedBytes();
+            }
+            showStatus("Loaded " + (files.length - failed) + " of " + files.length + " files, "
+                    + events + " events, slowest file " + millis + " ms, shared "
+                    + duplicates + " repeated strings (~" + savedBytes / 1024 + " KB)");
+            if (failed > 0)
+            	showError(failures.toString());
         } 
     }
     
@@ -1,14 +1,48 @@
 package filtering;
 
 import model.Event;
+import model.EventStore;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 public abstract class AbstractFilter {
 
+	/**
+	 * Fewest events worth splitting across threads, and the most each
+	 * fork/join task checks on its own
+	 */
+	private static final int PARALLEL_THRESHOLD = 8192;
+	private static final int PARALLEL_CHUNK = 2048;
+
+	private boolean myParallel;
+
 	public abstract boolean checkFilterCondition(Event event, Object... args);
 
-	public List<Event> filter(List<Event> eventList, Object... args) {
+	/**
+	 * Turns parallel checking of large inputs on or off. Off by default;
+	 * only turn it on for filters whose condition keeps no per-event state.
+	 * The results are the same, in the same order, either way.
+	 *
+	 * @param parallel
+	 *            true to check large inputs on the common fork/join pool
+	 */
+	public void setParallel(boolean parallel) {
+		myParallel = parallel;
+	}
+
+	public List<Event> filter(Iterable<Event> eventList, Object... args) {
+		List<Event> events = parallelInput(eventList);
+		if (events != null)
+			return collect(events, checkInParallel(events, args), true);
 		List<Event> filteredEvents = new ArrayList<Event>();
 		for (Event event : eventList) {
 			if (checkFilterCondition(event, args)) {
@@ -18,7 +52,64 @@ public abstract class AbstractFilter {
 		return filteredEvents;
 	}
 
-	public List<Event> invertedFilter(List<Event> eventList, Object... args) {
+	/**
+	 * Filters a column store
+	 *
+	 * @return a store holding the events that pass, in the same order
+	 */
+	public EventStore filter(EventStore events, Object... args) {
+		int[] ids = matchingIds(events, args);
+		return events.select(ids, ids.length);
+	}
+
+	/**
+	 * Finds the events of a store that pass. Filters whose condition can be
+	 * checked on the store's columns override this to scan them directly;
+	 * by default each event is checked with checkFilterCondition.
+	 *
+	 * @return the ids of the events that pass, in increasing order
+	 */
+	public int[] matchingIds(EventStore events, Object... args) {
+		int[] ids = new int[events.size()];
+		int count = 0;
+		if (worthSplitting(events.size())) {
+			boolean[] passed = checkInParallel(events.getEvents(), args);
+			for (int id = 0; id < passed.length; id++) {
+				if (passed[id])
+					ids[count++] = id;
+			}
+			return Arrays.copyOf(ids, count);
+		}
+		for (int id = 0; id < events.size(); id++) {
+			if (checkFilterCondition(events.getEvent(id), args))
+				ids[count++] = id;
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	/**
+	 * @return the ids of the events of a store that pass, as a bitmap to
+	 *         combine with other filters' before materializing
+	 */
+	public EventBitmap matchingBitmap(EventStore events, Object... args) {
+		return EventBitmap.of(matchingIds(events, args));
+	}
+
+	/**
+	 * Finds the events of a store that fail by taking the ones that pass
+	 * away from all ids, rather than with a second pass
+	 *
+	 * @return the ids of the events that fail, as a bitmap
+	 */
+	public EventBitmap invertedBitmap(EventStore events, Object... args) {
+		return EventBitmap.range(0, events.size()).andNot(
+		        matchingBitmap(events, args));
+	}
+
+	public List<Event> invertedFilter(Iterable<Event> eventList, Object... args) {
+		List<Event> events = parallelInput(eventList);
+		if (events != null)
+			return collect(events, checkInParallel(events, args), false);
 		List<Event> filteredEvents = new ArrayList<Event>();
 		for (Event event : eventList) {
 			if (!checkFilterCondition(event, args)) {
@@ -28,4 +119,140 @@ public abstract class AbstractFilter {
 		return filteredEvents;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * @return the events as a random access list if they should be checked
+	 *         in parallel, or null to check them in one loop
+	 */
+	private List<Event> parallelInput(Iterable<Event> eventList) {
+		if (!(eventList instanceof Collection)
+		        || !worthSplitting(((Collection<Event>) eventList).size()))
+			return null;
+		if (eventList instanceof List && eventList instanceof RandomAccess)
+			return (List<Event>) eventList;
+		return new ArrayList<Event>((Collection<Event>) eventList);
+	}
+
+	/**
+	 * @return true if parallel mode is on, the input is large and there is
+	 *         more than one thread to share it
+	 */
+	private boolean worthSplitting(int size) {
+		return myParallel && size >= PARALLEL_THRESHOLD
+		        && ForkJoinPool.getCommonPoolParallelism() > 1;
+	}
+
+	/**
+	 * Checks the events on the common fork/join pool. Each task writes into
+	 * its own slots of one array, so the answers stay in input order.
+	 *
+	 * @return whether each event passes, by position
+	 */
+	private boolean[] checkInParallel(List<Event> events, Object... args) {
+		boolean[] passed = new boolean[events.size()];
+		ForkJoinPool.commonPool().invoke(
+		        new CheckEventsTask(events, args, passed, 0, passed.length));
+		return passed;
+	}
+
+	private static List<Event> collect(List<Event> events, boolean[] passed,
+	        boolean wanted) {
+		List<Event> filteredEvents = new ArrayList<Event>();
+		for (int i = 0; i < passed.length; i++) {
+			if (passed[i] == wanted)
+				filteredEvents.add(events.get(i));
+		}
+		return filteredEvents;
+	}
+
+	/**
+	 * Checks the events between two indices, splitting the range in half
+	 * until it is small enough
+	 */
+	@SuppressWarnings("serial")
+	private class CheckEventsTask extends RecursiveAction {
+		private List<Event> myEvents;
+		private Object[] myArgs;
+		private boolean[] myPassed;
+		private int myStart;
+		private int myEnd;
+
+		CheckEventsTask(List<Event> events, Object[] args, boolean[] passed,
+		        int start, int end) {
+			myEvents = events;
+			myArgs = args;
+			myPassed = passed;
+			myStart = start;
+			myEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (myEnd - myStart <= PARALLEL_CHUNK) {
+				for (int i = myStart; i < myEnd; i++)
+					myPassed[i] = checkFilterCondition(myEvents.get(i), myArgs);
+				return;
+			}
+			int middle = (myStart + myEnd) >>> 1;
+			invokeAll(new CheckEventsTask(myEvents, myArgs, myPassed, myStart,
+			        middle), new CheckEventsTask(myEvents, myArgs, myPassed,
+			        middle, myEnd));
+		}
+	}
+
+	/**
+	 * Filters events as they are pulled through, without collecting them
+	 *
+	 * @param events
+	 *            a possibly lazy source such as a parser's EventIterator
+	 * @return the events that pass, produced on demand
+	 */
+	public Iterator<Event> lazyFilter(final Iterator<Event> events,
+	        final Object... args) {
+		return new Iterator<Event>() {
+			private Event myNext;
+
+			public boolean hasNext() {
+				while (myNext == null && events.hasNext()) {
+					Event event = events.next();
+					if (checkFilterCondition(event, args))
+						myNext = event;
+				}
+				return myNext != null;
+			}
+
+			public Event next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Event event = myNext;
+				myNext = null;
+				return event;
+			}
+		};
+	}
+
+	/**
+	 * @return this filter with its arguments bound, checking the events of
+	 *         a store by id. Filters that can decide from the store's
+	 *         columns override this.
+	 */
+	public IntPredicate asIdPredicate(final EventStore events,
+	        final Object... args) {
+		return new IntPredicate() {
+			public boolean test(int id) {
+				return checkFilterCondition(events.getEvent(id), args);
+			}
+		};
+	}
+
+	/**
+	 * @return this filter with its arguments bound, for use on event streams
+	 */
+	public Predicate<Event> asPredicate(final Object... args) {
+		return new Predicate<Event>() {
+			public boolean test(Event event) {
+				return checkFilterCondition(event, args);
+			}
+		};
+	}
+
+}
@@ -1,7 +1,9 @@
 package filtering;
 
-import org.joda.time.DateTime;
+import java.util.Arrays;
+
 import model.Event;
+import model.EventStore;
 
 public class ConflictFilter extends AbstractFilter{
 
@@ -10,27 +12,49 @@ public class ConflictFilter extends AbstractFilter{
 	}
 	
 	public boolean isConflicting(Event e1, Event e2){
-		if(e1!=e2){
-        	//there is probably a more efficient way to check for conflicts,
-        	//but I do not know it
-			DateTime e1s = e1.getStartTime();
-	    	DateTime e1e = e1.getEndTime();
-			DateTime e2s = e2.getStartTime();
-        	DateTime e2e = e2.getEndTime();
-        	//e1 starts before e2 ends
-        	if(e1s.isAfter(e2s) && e1s.isBefore(e2e))
-        		return true;
-        	//e1 ends after e2 starts
-        	else if(e1e.isAfter(e2s) && e1e.isBefore(e2e))
-        		return true;
-        	//e1 starts before and ends after e2
-        	else if(e1s.isBefore(e2s) && e1e.isAfter(e2e))
-        		return true;
-        	//e1 starts and ends at same time as e2
-        	else if(e1s.isEqual(e2s) && e1e.isEqual(e2e))
-        		return true;
-        }
+		if(e1!=e2)
+			return isConflicting(e1.getStartMillis(), e1.getEndMillis(),
+			        e2.getStartMillis(), e2.getEndMillis());
+		return false;
+	}
+
+	/**
+	 * Whether an event from e1s to e1e conflicts with one from e2s to e2e
+	 */
+	public static boolean isConflicting(long e1s, long e1e, long e2s, long e2e){
+		//e1 starts before e2 ends
+		if(e1s > e2s && e1s < e2e)
+			return true;
+		//e1 ends after e2 starts
+		else if(e1e > e2s && e1e < e2e)
+			return true;
+		//e1 starts before and ends after e2
+		else if(e1s < e2s && e1e > e2e)
+			return true;
+		//e1 starts and ends at same time as e2
+		else if(e1s == e2s && e1e == e2e)
+			return true;
 		return false;
 	}
 
+	/**
+	 * Scans the start and end columns for events conflicting with the one
+	 * given as the argument
+	 */
+	@Override
+	public int[] matchingIds(EventStore events, Object... args) {
+		Event other = (Event) args[0];
+		long otherStart = other.getStartMillis();
+		long otherEnd = other.getEndMillis();
+		int size = events.size();
+		int[] ids = new int[size];
+		int count = 0;
+		for (int id = 0; id < size; id++) {
+			if (isConflicting(events.getStart(id), events.getEnd(id),
+			        otherStart, otherEnd) && events.getEvent(id) != other)
+				ids[count++] = id;
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
 }
@@ -0,0 +1,213 @@
+package filtering;
+
+import java.util.*;
+
+import model.Event;
+import model.EventStore;
+
+/**
+ * Finds, for every event of a list at once, the other events of the list
+ * that conflict with it, in the sense of ConflictFilter.isConflicting.
+ * Instead of comparing every pair, the events are sorted by start once and
+ * swept in that order, keeping the events still in progress in an active
+ * set; only events whose spans overlap are ever compared. Building the
+ * whole answer takes O(n log n + k) for k overlapping pairs.
+ */
+public class ConflictSweep {
+
+	private Event[] myEvents;
+	private int[] myOffsets;
+	private int[] myConflicts;
+
+	/**
+	 * @param events
+	 *            the events, which are also the ones checked against
+	 */
+	public ConflictSweep(List<Event> events) {
+		int size = events.size();
+		myEvents = events.toArray(new Event[size]);
+		long[] starts = new long[size];
+		long[] ends = new long[size];
+		for (int i = 0; i < size; i++) {
+			starts[i] = myEvents[i].getStartMillis();
+			ends[i] = myEvents[i].getEndMillis();
+		}
+		sweep(starts, ends);
+	}
+
+	/**
+	 * @param events
+	 *            a store, read through its time columns
+	 */
+	public ConflictSweep(EventStore events) {
+		int size = events.size();
+		myEvents = new Event[size];
+		long[] starts = new long[size];
+		long[] ends = new long[size];
+		for (int id = 0; id < size; id++) {
+			myEvents[id] = events.getEvent(id);
+			starts[id] = events.getStart(id);
+			ends[id] = events.getEnd(id);
+		}
+		sweep(starts, ends);
+	}
+
+	/**
+	 * @return the indices of the events conflicting with the event at the
+	 *         index, in increasing order, as ConflictFilter.filter(events,
+	 *         event) would list them
+	 */
+	public int[] getConflictIndices(int index) {
+		return Arrays.copyOfRange(myConflicts, myOffsets[index],
+		        myOffsets[index + 1]);
+	}
+
+	/**
+	 * @return the events conflicting with the event at the index, in list
+	 *         order
+	 */
+	public List<Event> getConflicts(int index) {
+		List<Event> conflicts = new ArrayList<Event>(myOffsets[index + 1]
+		        - myOffsets[index]);
+		for (int i = myOffsets[index]; i < myOffsets[index + 1]; i++)
+			conflicts.add(myEvents[myConflicts[i]]);
+		return conflicts;
+	}
+
+	/**
+	 * @return how many conflicting pairs there are, counting each direction
+	 */
+	public int getConflictCount() {
+		return myConflicts.length;
+	}
+
+	/**
+	 * Every conflict as isConflicting defines it lies inside the overlap of
+	 * the two events' spans taken as closed intervals from the smaller to
+	 * the larger of start and end, so overlapping spans are the only pairs
+	 * worth checking. Each such pair is then checked exactly, both ways.
+	 */
+	private void sweep(long[] starts, long[] ends) {
+		int size = starts.length;
+		long[] lows = new long[size];
+		long[] highs = new long[size];
+		for (int i = 0; i < size; i++) {
+			lows[i] = Math.min(starts[i], ends[i]);
+			highs[i] = Math.max(starts[i], ends[i]);
+		}
+		int[] order = sortedOrder(lows);
+
+		PairList pairs = new PairList();
+		int[] active = new int[size];
+		int activeCount = 0;
+		for (int next : order) {
+			int kept = 0;
+			for (int a = 0; a < activeCount; a++) {
+				int other = active[a];
+				if (highs[other] < lows[next])
+					continue;
+				active[kept++] = other;
+				if (myEvents[other] == myEvents[next])
+					continue;
+				if (ConflictFilter.isConflicting(starts[other], ends[other],
+				        starts[next], ends[next]))
+					pairs.add(other, next);
+				if (ConflictFilter.isConflicting(starts[next], ends[next],
+				        starts[other], ends[other]))
+					pairs.add(next, other);
+			}
+			active[kept++] = next;
+			activeCount = kept;
+		}
+		group(pairs, size);
+	}
+
+	/**
+	 * Groups the pairs by the event conflicted with, each group in
+	 * increasing order, with two counting sort passes
+	 */
+	private void group(PairList pairs, int size) {
+		int[] byConflict = countingSort(pairs.myConflicting, pairs.mySize,
+		        identity(pairs.mySize), size);
+		myOffsets = new int[size + 1];
+		for (int i = 0; i < pairs.mySize; i++)
+			myOffsets[pairs.myChecked[i] + 1]++;
+		for (int i = 0; i < size; i++)
+			myOffsets[i + 1] += myOffsets[i];
+		int[] next = Arrays.copyOf(myOffsets, size);
+		myConflicts = new int[pairs.mySize];
+		for (int pair : byConflict)
+			myConflicts[next[pairs.myChecked[pair]]++] = pairs.myConflicting[pair];
+	}
+
+	/**
+	 * @return the positions, stably ordered by their key
+	 */
+	private static int[] countingSort(int[] keys, int count, int[] positions,
+	        int keyRange) {
+		int[] starts = new int[keyRange + 1];
+		for (int i = 0; i < count; i++)
+			starts[keys[i] + 1]++;
+		for (int i = 0; i < keyRange; i++)
+			starts[i + 1] += starts[i];
+		int[] sorted = new int[count];
+		for (int position : positions)
+			sorted[starts[keys[position]]++] = position;
+		return sorted;
+	}
+
+	private static int[] identity(int count) {
+		int[] identity = new int[count];
+		for (int i = 0; i < count; i++)
+			identity[i] = i;
+		return identity;
+	}
+
+	/**
+	 * @return the indices of the values in increasing order of value, ties
+	 *         kept in index order
+	 */
+	private static int[] sortedOrder(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int[] filled = new int[values.length];
+		int[] order = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			int first = lowerBound(sorted, values[i]);
+			order[first + filled[first]++] = i;
+		}
+		return order;
+	}
+
+	private static int lowerBound(long[] sorted, long value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Growable list of (conflicting event, event checked against) index
+	 * pairs
+	 */
+	private static class PairList {
+		private int[] myConflicting = new int[16];
+		private int[] myChecked = new int[16];
+		private int mySize;
+
+		void add(int conflicting, int checked) {
+			if (mySize == myConflicting.length) {
+				myConflicting = Arrays.copyOf(myConflicting, mySize * 2);
+				myChecked = Arrays.copyOf(myChecked, mySize * 2);
+			}
+			myConflicting[mySize] = conflicting;
+			myChecked[mySize++] = checked;
+		}
+	}
+}
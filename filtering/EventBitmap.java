@@ -0,0 +1,407 @@
+package filtering;
+
+import java.util.Arrays;
+
+import model.EventStore;
+
+/**
+ * A compressed, immutable set of event ids laid out like a roaring bitmap.
+ * Ids are grouped by their high 16 bits; each group of up to 65536 ids is
+ * kept as a sorted array of its low 16 bits while it holds at most 4096
+ * ids, and as a plain bitmap of 1024 words once it holds more. Sparse
+ * result sets thus cost two bytes per id and dense ones one bit, and and,
+ * or and andNot work a group at a time, with word operations between two
+ * bitmap groups.
+ *
+ * Filters hand these out from AbstractFilter.matchingBitmap, so their
+ * results can be combined before a single select materializes the events.
+ */
+public final class EventBitmap {
+
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int WORDS = 1024;
+	private static final EventBitmap EMPTY = new EventBitmap(new char[0],
+	        new Container[0], 0);
+
+	private final char[] myKeys;
+	private final Container[] myContainers;
+	private final int mySize;
+
+	private EventBitmap(char[] keys, Container[] containers, int size) {
+		myKeys = keys;
+		myContainers = containers;
+		mySize = size;
+	}
+
+	public static EventBitmap empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @param ids
+	 *            non-negative ids in increasing order, as matchingIds gives
+	 */
+	public static EventBitmap of(int[] ids) {
+		char[] keys = new char[groupCount(ids)];
+		Container[] containers = new Container[keys.length];
+		int size = 0;
+		int start = 0;
+		while (start < ids.length) {
+			int high = ids[start] >>> 16;
+			int end = start;
+			while (end < ids.length && ids[end] >>> 16 == high)
+				end++;
+			keys[size] = (char) high;
+			containers[size++] = containerOf(ids, start, end);
+			start = end;
+		}
+		return new EventBitmap(keys, containers, size);
+	}
+
+	/**
+	 * @return the ids from, inclusive, to to, exclusive, such as every id
+	 *         of a store
+	 */
+	public static EventBitmap range(int from, int to) {
+		if (to <= from)
+			return EMPTY;
+		int firstKey = from >>> 16;
+		int lastKey = (to - 1) >>> 16;
+		char[] keys = new char[lastKey - firstKey + 1];
+		Container[] containers = new Container[keys.length];
+		for (int key = firstKey; key <= lastKey; key++) {
+			int base = key << 16;
+			int low = Math.max(from, base) - base;
+			int high = (int) Math.min(to, (long) base + 0x10000) - base;
+			keys[key - firstKey] = (char) key;
+			long[] words = new long[WORDS];
+			for (int bit = low; bit < high; bit++)
+				words[bit >>> 6] |= 1L << bit;
+			containers[key - firstKey] = fromWords(words);
+		}
+		return new EventBitmap(keys, containers, keys.length);
+	}
+
+	public boolean contains(int id) {
+		int index = Arrays.binarySearch(myKeys, 0, mySize, (char) (id >>> 16));
+		return index >= 0 && myContainers[index].contains(id & 0xFFFF);
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < mySize; i++)
+			cardinality += myContainers[i].cardinality();
+		return cardinality;
+	}
+
+	/**
+	 * @return the ids in increasing order
+	 */
+	public int[] toArray() {
+		int[] ids = new int[cardinality()];
+		int offset = 0;
+		for (int i = 0; i < mySize; i++)
+			offset = myContainers[i].fill(myKeys[i] << 16, ids, offset);
+		return ids;
+	}
+
+	/**
+	 * @return a store holding the events with these ids, in id order
+	 */
+	public EventStore materialize(EventStore events) {
+		int[] ids = toArray();
+		return events.select(ids, ids.length);
+	}
+
+	public EventBitmap and(EventBitmap other) {
+		char[] keys = new char[Math.min(mySize, other.mySize)];
+		Container[] containers = new Container[keys.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < mySize && j < other.mySize) {
+			if (myKeys[i] < other.myKeys[j]) {
+				i++;
+			} else if (myKeys[i] > other.myKeys[j]) {
+				j++;
+			} else {
+				Container both = and(myContainers[i], other.myContainers[j]);
+				if (both.cardinality() > 0) {
+					keys[size] = myKeys[i];
+					containers[size++] = both;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new EventBitmap(keys, containers, size);
+	}
+
+	public EventBitmap or(EventBitmap other) {
+		char[] keys = new char[mySize + other.mySize];
+		Container[] containers = new Container[keys.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < mySize || j < other.mySize) {
+			if (j == other.mySize
+			        || (i < mySize && myKeys[i] < other.myKeys[j])) {
+				keys[size] = myKeys[i];
+				containers[size++] = myContainers[i++];
+			} else if (i == mySize || myKeys[i] > other.myKeys[j]) {
+				keys[size] = other.myKeys[j];
+				containers[size++] = other.myContainers[j++];
+			} else {
+				keys[size] = myKeys[i];
+				containers[size++] = or(myContainers[i++],
+				        other.myContainers[j++]);
+			}
+		}
+		return new EventBitmap(keys, containers, size);
+	}
+
+	/**
+	 * @return the ids in this set but not in the other
+	 */
+	public EventBitmap andNot(EventBitmap other) {
+		char[] keys = new char[mySize];
+		Container[] containers = new Container[mySize];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < mySize; i++) {
+			while (j < other.mySize && other.myKeys[j] < myKeys[i])
+				j++;
+			Container rest = myContainers[i];
+			if (j < other.mySize && other.myKeys[j] == myKeys[i])
+				rest = andNot(rest, other.myContainers[j]);
+			if (rest.cardinality() > 0) {
+				keys[size] = myKeys[i];
+				containers[size++] = rest;
+			}
+		}
+		return new EventBitmap(keys, containers, size);
+	}
+
+	public String toString() {
+		return "EventBitmap(" + cardinality() + " ids in " + mySize
+		        + " containers)";
+	}
+
+	private static int groupCount(int[] ids) {
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] >>> 16 != ids[i - 1] >>> 16)
+				count++;
+		}
+		return count;
+	}
+
+	private static Container containerOf(int[] ids, int start, int end) {
+		if (end - start <= ARRAY_LIMIT) {
+			char[] values = new char[end - start];
+			for (int i = start; i < end; i++)
+				values[i - start] = (char) ids[i];
+			return new ArrayContainer(values);
+		}
+		long[] words = new long[WORDS];
+		for (int i = start; i < end; i++)
+			words[(ids[i] & 0xFFFF) >>> 6] |= 1L << ids[i];
+		return new BitmapContainer(words, end - start);
+	}
+
+	/**
+	 * @return the smaller kind of container for the bits
+	 */
+	private static Container fromWords(long[] words) {
+		int cardinality = 0;
+		for (long word : words)
+			cardinality += Long.bitCount(word);
+		if (cardinality > ARRAY_LIMIT)
+			return new BitmapContainer(words, cardinality);
+		char[] values = new char[cardinality];
+		int count = 0;
+		for (int i = 0; i < WORDS; i++) {
+			long word = words[i];
+			while (word != 0) {
+				values[count++] = (char) ((i << 6) + Long
+				        .numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return new ArrayContainer(values);
+	}
+
+	private static Container and(Container a, Container b) {
+		if (a instanceof ArrayContainer)
+			return ((ArrayContainer) a).retain(b, true);
+		if (b instanceof ArrayContainer)
+			return ((ArrayContainer) b).retain(a, true);
+		long[] words = ((BitmapContainer) a).copyWords();
+		long[] others = ((BitmapContainer) b).myWords;
+		for (int i = 0; i < WORDS; i++)
+			words[i] &= others[i];
+		return fromWords(words);
+	}
+
+	private static Container or(Container a, Container b) {
+		if (a instanceof ArrayContainer && b instanceof ArrayContainer
+		        && a.cardinality() + b.cardinality() <= ARRAY_LIMIT)
+			return ((ArrayContainer) a).union((ArrayContainer) b);
+		long[] words = a.copyWords();
+		b.addTo(words);
+		return fromWords(words);
+	}
+
+	private static Container andNot(Container a, Container b) {
+		if (a instanceof ArrayContainer)
+			return ((ArrayContainer) a).retain(b, false);
+		long[] words = a.copyWords();
+		b.removeFrom(words);
+		return fromWords(words);
+	}
+
+	/**
+	 * The low 16 bits of the ids sharing one value of the high 16 bits
+	 */
+	private static abstract class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(int low);
+
+		/**
+		 * Writes the ids into the array from the offset on
+		 *
+		 * @return the offset after the last id written
+		 */
+		abstract int fill(int base, int[] ids, int offset);
+
+		/**
+		 * @return a bitmap of the values that the caller may change
+		 */
+		abstract long[] copyWords();
+
+		abstract void addTo(long[] words);
+
+		abstract void removeFrom(long[] words);
+	}
+
+	private static class ArrayContainer extends Container {
+		private final char[] myValues;
+
+		ArrayContainer(char[] values) {
+			myValues = values;
+		}
+
+		int cardinality() {
+			return myValues.length;
+		}
+
+		boolean contains(int low) {
+			return Arrays.binarySearch(myValues, (char) low) >= 0;
+		}
+
+		int fill(int base, int[] ids, int offset) {
+			for (char value : myValues)
+				ids[offset++] = base | value;
+			return offset;
+		}
+
+		long[] copyWords() {
+			long[] words = new long[WORDS];
+			addTo(words);
+			return words;
+		}
+
+		void addTo(long[] words) {
+			for (char value : myValues)
+				words[value >>> 6] |= 1L << value;
+		}
+
+		void removeFrom(long[] words) {
+			for (char value : myValues)
+				words[value >>> 6] &= ~(1L << value);
+		}
+
+		/**
+		 * @return the values that are, or with keep false are not, in the
+		 *         other container
+		 */
+		Container retain(Container other, boolean keep) {
+			char[] values = new char[myValues.length];
+			int count = 0;
+			for (char value : myValues) {
+				if (other.contains(value) == keep)
+					values[count++] = value;
+			}
+			return new ArrayContainer(Arrays.copyOf(values, count));
+		}
+
+		Container union(ArrayContainer other) {
+			char[] values = new char[myValues.length + other.myValues.length];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while (i < myValues.length || j < other.myValues.length) {
+				if (j == other.myValues.length
+				        || (i < myValues.length && myValues[i] < other.myValues[j]))
+					values[count++] = myValues[i++];
+				else if (i == myValues.length
+				        || myValues[i] > other.myValues[j])
+					values[count++] = other.myValues[j++];
+				else {
+					values[count++] = myValues[i++];
+					j++;
+				}
+			}
+			return new ArrayContainer(Arrays.copyOf(values, count));
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private final long[] myWords;
+		private final int myCardinality;
+
+		BitmapContainer(long[] words, int cardinality) {
+			myWords = words;
+			myCardinality = cardinality;
+		}
+
+		int cardinality() {
+			return myCardinality;
+		}
+
+		boolean contains(int low) {
+			return (myWords[low >>> 6] & (1L << low)) != 0;
+		}
+
+		int fill(int base, int[] ids, int offset) {
+			for (int i = 0; i < WORDS; i++) {
+				long word = myWords[i];
+				while (word != 0) {
+					ids[offset++] = base
+					        | ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+
+		long[] copyWords() {
+			return myWords.clone();
+		}
+
+		void addTo(long[] words) {
+			for (int i = 0; i < WORDS; i++)
+				words[i] |= myWords[i];
+		}
+
+		void removeFrom(long[] words) {
+			for (int i = 0; i < WORDS; i++)
+				words[i] &= ~myWords[i];
+		}
+	}
+}
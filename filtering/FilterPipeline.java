@@ -0,0 +1,225 @@
+package filtering;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Combines several filters over the ids of one event store into a single
+ * pass. Before the pass, every stage is timed on a small sample of the ids
+ * to measure its cost per event and the share of events it lets through;
+ * the stages are then checked cheapest and most selective first, and each
+ * event stops at the first stage it fails. A stage that can list its
+ * matches directly, from an index, may supply the ids to check instead of
+ * the whole store; when several can, their lists are intersected as
+ * bitmaps and those stages need no further checks.
+ */
+public class FilterPipeline {
+
+	private static final int SAMPLE_SIZE = 256;
+	/**
+	 * An index list is intersected with the others when it holds at most
+	 * this share of the store
+	 */
+	private static final int INDEXED_SHARE = 4;
+
+	/**
+	 * Lists the ids passing a stage without checking every event
+	 */
+	public interface CandidateSource {
+		/**
+		 * @return about how many ids candidates would list, or -1 if that
+		 *         is not known without listing them
+		 */
+		int estimate();
+
+		/**
+		 * @return the ids passing the stage, in increasing order
+		 */
+		int[] candidates();
+	}
+
+	private List<Stage> myStages;
+
+	public FilterPipeline() {
+		myStages = new ArrayList<Stage>();
+	}
+
+	/**
+	 * Adds a stage checked by a predicate on event ids
+	 *
+	 * @param name
+	 *            names the stage in toString
+	 * @param test
+	 *            usually AbstractFilter.asIdPredicate
+	 * @param source
+	 *            lists the matches from an index, or null if there is none
+	 */
+	public void add(String name, IntPredicate test, CandidateSource source) {
+		myStages.add(new Stage(name, test, source));
+	}
+
+	public boolean isEmpty() {
+		return myStages.isEmpty();
+	}
+
+	public void clear() {
+		myStages.clear();
+	}
+
+	/**
+	 * Runs every stage over the ids from 0 to size - 1
+	 *
+	 * @return the ids passing all stages, in increasing order
+	 */
+	public int[] run(int size) {
+		List<Stage> stages = new ArrayList<Stage>(myStages);
+		int[] candidates = null;
+		List<Stage> indexed = pickIndexedStages(stages, size);
+		if (!indexed.isEmpty()) {
+			candidates = intersectCandidates(indexed);
+			stages.removeAll(indexed);
+		}
+		int count = candidates == null ? size : candidates.length;
+		order(stages, candidates, count);
+		IntPredicate[] tests = new IntPredicate[stages.size()];
+		for (int i = 0; i < tests.length; i++)
+			tests[i] = stages.get(i).myTest;
+
+		int[] passed = new int[count];
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int id = candidates == null ? i : candidates[i];
+			if (passesAll(tests, id))
+				passed[kept++] = id;
+		}
+		return Arrays.copyOf(passed, kept);
+	}
+
+	private static boolean passesAll(IntPredicate[] tests, int id) {
+		for (IntPredicate test : tests) {
+			if (!test.test(id))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the stages whose index lists a small share of the store, or
+	 *         else the single one listing the fewest ids
+	 */
+	private static List<Stage> pickIndexedStages(List<Stage> stages, int size) {
+		List<Stage> small = new ArrayList<Stage>();
+		for (Stage stage : stages) {
+			if (stage.mySource == null)
+				continue;
+			int estimate = stage.mySource.estimate();
+			if (estimate >= 0 && estimate <= size / INDEXED_SHARE)
+				small.add(stage);
+		}
+		if (!small.isEmpty())
+			return small;
+		Stage best = pickIndexedStage(stages, size);
+		if (best != null)
+			small.add(best);
+		return small;
+	}
+
+	private static int[] intersectCandidates(List<Stage> indexed) {
+		if (indexed.size() == 1)
+			return indexed.get(0).mySource.candidates();
+		EventBitmap candidates = null;
+		for (Stage stage : indexed) {
+			EventBitmap ids = EventBitmap.of(stage.mySource.candidates());
+			candidates = candidates == null ? ids : candidates.and(ids);
+			if (candidates.isEmpty())
+				break;
+		}
+		return candidates.toArray();
+	}
+
+	/**
+	 * @return the stage whose index lists the fewest ids, if that is fewer
+	 *         than the whole store
+	 */
+	private static Stage pickIndexedStage(List<Stage> stages, int size) {
+		Stage best = null;
+		int bestEstimate = size;
+		Stage unknown = null;
+		for (Stage stage : stages) {
+			if (stage.mySource == null)
+				continue;
+			int estimate = stage.mySource.estimate();
+			if (estimate < 0) {
+				if (unknown == null)
+					unknown = stage;
+			} else if (estimate < bestEstimate) {
+				best = stage;
+				bestEstimate = estimate;
+			}
+		}
+		return best != null ? best : unknown;
+	}
+
+	/**
+	 * Times every stage on evenly spread sample ids and sorts the stages by
+	 * cost per event over the share of events they reject
+	 */
+	private static void order(List<Stage> stages, int[] candidates, int count) {
+		if (stages.size() < 2 || count == 0)
+			return;
+		int samples = Math.min(SAMPLE_SIZE, count);
+		int[] ids = new int[samples];
+		for (int i = 0; i < samples; i++) {
+			int position = (int) ((long) i * count / samples);
+			ids[i] = candidates == null ? position : candidates[position];
+		}
+		for (Stage stage : stages)
+			stage.measure(ids);
+		Collections.sort(stages, new Comparator<Stage>() {
+			public int compare(Stage a, Stage b) {
+				return Double.compare(a.myRank, b.myRank);
+			}
+		});
+	}
+
+	public String toString() {
+		StringBuilder text = new StringBuilder("FilterPipeline:");
+		for (Stage stage : myStages)
+			text.append(' ').append(stage);
+		return text.toString();
+	}
+
+	private static class Stage {
+		private String myName;
+		private IntPredicate myTest;
+		private CandidateSource mySource;
+		private double myNanos;
+		private double myPassRate;
+		private double myRank;
+
+		Stage(String name, IntPredicate test, CandidateSource source) {
+			myName = name;
+			myTest = test;
+			mySource = source;
+		}
+
+		void measure(int[] ids) {
+			int passed = 0;
+			long start = System.nanoTime();
+			for (int id : ids) {
+				if (myTest.test(id))
+					passed++;
+			}
+			myNanos = (double) (System.nanoTime() - start) / ids.length;
+			myPassRate = (double) passed / ids.length;
+			// a stage rejecting nothing only costs, so it goes last
+			myRank = myPassRate >= 1 ? Double.MAX_VALUE : myNanos
+			        / (1 - myPassRate);
+		}
+
+		public String toString() {
+			return myName + String.format("(%.0f ns, %.0f%% pass)", myNanos,
+			        100 * myPassRate);
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package filtering;
 
+import java.util.function.IntPredicate;
+
 import model.Event;
+import model.EventStore;
+import model.StringDictionary;
 
 public class LocationFilter extends AbstractFilter {
 	public boolean checkFilterCondition(Event event, Object... args) {
@@ -10,4 +14,27 @@ public class LocationFilter extends AbstractFilter {
 	public boolean isAtLocation(Event event, String location) {
 		return event.getLocation().contains(location);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Checks each distinct location string once and remembers the answer
+	 * by its dictionary id, since a store has far fewer locations than
+	 * events
+	 */
+	@Override
+	public IntPredicate asIdPredicate(final EventStore events, Object... args) {
+		final String location = (String) args[0];
+		final StringDictionary locations = events.getLocationDictionary();
+		final byte[] known = new byte[locations.size()];
+		return new IntPredicate() {
+			public boolean test(int id) {
+				int string = events.getLocationId(id);
+				if (string < 0 || string >= known.length)
+					return isAtLocation(events.getEvent(id), location);
+				if (known[string] == 0)
+					known[string] = locations.getString(string).contains(
+					        location) ? (byte) 1 : (byte) -1;
+				return known[string] > 0;
+			}
+		};
+	}
+}
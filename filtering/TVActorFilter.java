@@ -1,12 +1,45 @@
 package filtering;
 import model.Event;
+import model.PropertySchema;
 
 public class TVActorFilter extends AbstractFilter {
+	/**
+	 * Name of the property listing the actors of a programme
+	 */
+	public static final String ACTOR = "actor";
+
+	/**
+	 * The actor slot of the schema seen last. Events from one source share a
+	 * schema, so the slot is looked up about once per source, not per event.
+	 */
+	private ActorSlot myActorSlot;
+
 	public boolean checkFilterCondition(Event event, Object ... args) {
 		return hasActor(event, (String) args [0]);
 	}
 	
 	public boolean hasActor(Event event, String actor) {
-		return event.getProperty("actor") != null && event.getProperty("actor").contains(actor);
+		return event.hasPropertyValue(actorSlot(event.getPropertySchema()), actor);
+	}
+
+	private int actorSlot(PropertySchema schema) {
+		ActorSlot cached = myActorSlot;
+		if (cached != null && cached.mySchema == schema)
+			return cached.mySlot;
+		int slot = schema.indexOf(ACTOR);
+		// a schema can still gain the name later, so only remember hits
+		if (slot >= 0)
+			myActorSlot = new ActorSlot(schema, slot);
+		return slot;
+	}
+
+	private static class ActorSlot {
+		private final PropertySchema mySchema;
+		private final int mySlot;
+
+		ActorSlot(PropertySchema schema, int slot) {
+			mySchema = schema;
+			mySlot = slot;
+		}
 	}
 }
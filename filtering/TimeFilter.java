@@ -1,8 +1,11 @@
 package filtering;
 
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
 import model.Event;
+import model.EventStore;
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeComparator;
 
 public class TimeFilter extends AbstractFilter {
 
@@ -12,8 +15,39 @@ public class TimeFilter extends AbstractFilter {
 
 	public boolean isInStartTimeRange(Event event, DateTime lowerLimit,
 			DateTime upperLimit) {
-		DateTimeComparator comparator = DateTimeComparator.getInstance();
-		return comparator.compare(lowerLimit, event.getStartTime()) <= 0
-				&& comparator.compare(upperLimit, event.getStartTime()) >= 0;
+		return isInRange(event.getStartMillis(), lowerLimit.getMillis(),
+				upperLimit.getMillis());
+	}
+
+	/**
+	 * Scans the start column, both limits inclusive
+	 */
+	@Override
+	public int[] matchingIds(EventStore events, Object... args) {
+		long lower = ((DateTime) args[0]).getMillis();
+		long upper = ((DateTime) args[1]).getMillis();
+		int size = events.size();
+		int[] ids = new int[size];
+		int count = 0;
+		for (int id = 0; id < size; id++) {
+			if (isInRange(events.getStart(id), lower, upper))
+				ids[count++] = id;
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	@Override
+	public IntPredicate asIdPredicate(final EventStore events, Object... args) {
+		final long lower = ((DateTime) args[0]).getMillis();
+		final long upper = ((DateTime) args[1]).getMillis();
+		return new IntPredicate() {
+			public boolean test(int id) {
+				return isInRange(events.getStart(id), lower, upper);
+			}
+		};
+	}
+
+	private static boolean isInRange(long start, long lower, long upper) {
+		return lower <= start && start <= upper;
 	}
-}
\ No newline at end of file
+}
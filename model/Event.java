@@ -2,67 +2,175 @@ package model;
 import org.joda.time.*;
 import java.util.*;
 
-public class Event {
-	
-	private String myTitle;
-	private DateTime myStartTime;
-	private DateTime myEndTime;
-	private String myDescription;
-	private String myLocation;
-	private HashMap<String, ArrayList<String>> properties;
+/**
+ * One calendar event. Events are immutable, and the times are kept as epoch
+ * millis with a single zone, so an event costs a few words on the heap. The
+ * DateTime getters build their result on each call. Extra properties are
+ * kept as arrays of values in the slots of a shared PropertySchema.
+ */
+public final class Event {
 
+	private final String myTitle;
+	private final long myStartMillis;
+	private final long myEndMillis;
+	private final DateTimeZone myZone;
+	private final String myDescription;
+	private final String myLocation;
+	private final PropertySchema mySchema;
+	private final String[][] myValues;
+
+	/**
+	 * The end time is kept in the zone of the start time
+	 */
 	public Event(String title, DateTime startTime, DateTime endTime, String description, String location, HashMap<String, ArrayList<String>> properties) {
+		this(title, startTime.getMillis(), endTime.getMillis(), startTime.getZone(), description, location, properties);
+	}
+
+	/**
+	 * @param startMillis Start of the event, in epoch millis
+	 * @param endMillis End of the event, in epoch millis
+	 * @param zone The zone the times are shown in
+	 * @param properties Extra properties, laid out in the default schema
+	 */
+	public Event(String title, long startMillis, long endMillis, DateTimeZone zone, String description, String location, Map<String, ? extends List<String>> properties) {
+		this(title, startMillis, endMillis, zone, description, location, PropertySchema.getDefault(), properties);
+	}
+
+	/**
+	 * @param schema Gives the slots the properties are kept in; events from
+	 * the same source should share one
+	 * @param properties Extra properties, may be null
+	 */
+	public Event(String title, long startMillis, long endMillis, DateTimeZone zone, String description, String location, PropertySchema schema, Map<String, ? extends List<String>> properties) {
+		this(title, startMillis, endMillis, zone, description, location, schema, schema.toValues(properties));
+	}
+
+	private Event(String title, long startMillis, long endMillis, DateTimeZone zone, String description, String location, PropertySchema schema, String[][] values) {
 		myTitle = title;
-		myStartTime = startTime;
-		myEndTime = endTime;
+		myStartMillis = startMillis;
+		myEndMillis = endMillis;
+		myZone = zone;
 		myDescription = description;
 		myLocation = location;
-		this.properties = properties;
+		mySchema = schema;
+		myValues = values;
 	}
-	
+
 	public String getTitle() {
 		return myTitle;
 	}
 
 	public DateTime getStartTime() {
-		return myStartTime;
+		return new DateTime(myStartMillis, myZone);
 	}
-	
+
 	public DateTime getEndTime(){
-		return myEndTime;
+		return new DateTime(myEndMillis, myZone);
+	}
+
+	public long getStartMillis() {
+		return myStartMillis;
+	}
+
+	public long getEndMillis() {
+		return myEndMillis;
+	}
+
+	public DateTimeZone getZone() {
+		return myZone;
 	}
 
 	public String getDescription(){
 		return myDescription;
 	}
-	
+
 	public String getLocation(){
 		return myLocation;
 	}
 
+	/**
+	 * @return a copy of this event moved to other times, sharing everything
+	 * else with this one
+	 */
+	public Event reschedule(DateTime startTime, DateTime endTime){
+		return new Event(myTitle, startTime.getMillis(), endTime.getMillis(), startTime.getZone(), myDescription, myLocation, mySchema, myValues);
+	}
+
+	/**
+	 * @return a copy of this event without the property, sharing everything
+	 * else with this one, or this event if it does not have the property
+	 */
+	public Event withoutProperty(String prop){
+		int slot = mySchema.indexOf(prop);
+		if(slot < 0 || slot >= myValues.length || myValues[slot] == null)
+			return this;
+		String[][] values = myValues.clone();
+		values[slot] = null;
+		return new Event(myTitle, myStartMillis, myEndMillis, myZone, myDescription, myLocation, mySchema, values);
+	}
+
 	public boolean isAllDay(){
-		if (myStartTime.getMinuteOfDay() == 0 && myEndTime.getMinuteOfDay() == 0)
+		if (getStartTime().getMinuteOfDay() == 0 && getEndTime().getMinuteOfDay() == 0)
 			return true;
 		else
 			return false;
 	}
 
+	/**
+	 * @return the values of the property, or null if the event does not have
+	 * it
+	 */
 	public List<String> getProperty(String prop){
-		if(properties!=null)
-			return properties.get(prop);
-		return null;
+		return getProperty(mySchema.indexOf(prop));
+	}
+
+	/**
+	 * @param slot A slot of this event's schema
+	 * @return the values in the slot, or null if the event has none there
+	 */
+	public List<String> getProperty(int slot){
+		if(slot < 0 || slot >= myValues.length || myValues[slot] == null)
+			return null;
+		return Collections.unmodifiableList(Arrays.asList(myValues[slot]));
 	}
-	
+
+	/**
+	 * @param slot A slot of this event's schema
+	 * @return whether one of the values in the slot equals the given value
+	 */
+	public boolean hasPropertyValue(int slot, String value){
+		if(slot < 0 || slot >= myValues.length || myValues[slot] == null)
+			return false;
+		for(String each : myValues[slot]){
+			if(value == null ? each == null : value.equals(each))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the schema giving the slots of this event's properties
+	 */
+	public PropertySchema getPropertySchema(){
+		return mySchema;
+	}
+
+	/**
+	 * @return the names of the extra properties, empty if there are none
+	 */
 	public Set<String> getPropertyNames(){
-		if(properties!=null)
-			return properties.keySet();
-		return null;
+		Set<String> names = new LinkedHashSet<String>();
+		for(int slot = 0; slot < myValues.length; slot++){
+			if(myValues[slot] != null)
+				names.add(mySchema.getName(slot));
+		}
+		return Collections.unmodifiableSet(names);
 	}
-	
+
 	public String toString(){
 		return myTitle + " " +
-				myStartTime + " " +
-				myEndTime + " " +
+				getStartTime() + " " +
+				getEndTime() + " " +
 				myDescription + " " +
 				myLocation + " " +
 				myDescription + " is " +
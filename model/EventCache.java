@@ -0,0 +1,174 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Keeps the events parsed from recently loaded files, keyed by the
+ * fingerprint of the file, so loading an unchanged file again does not
+ * reparse it. Least recently used files are evicted once the estimated size
+ * of the cached events goes over a byte budget.
+ */
+public class EventCache {
+
+	private static final int EVENT_OVERHEAD = 56;
+	private static final int STRING_OVERHEAD = 40;
+	private static final int SLOT_OVERHEAD = 16;
+
+	private long myBudget;
+	private long myBytes;
+	private LinkedHashMap<FileFingerprint, CachedEvents> myEntries;
+	private long myHits;
+	private long myMisses;
+	private long myEvictions;
+
+	/**
+	 * @param budget
+	 *            most bytes of events to keep, as estimated by estimateBytes
+	 */
+	public EventCache(long budget) {
+		myBudget = budget;
+		myEntries = new LinkedHashMap<FileFingerprint, CachedEvents>(16,
+		        0.75f, true);
+	}
+
+	/**
+	 * @return the events parsed from exactly this version of the file, or
+	 *         null if they are not cached
+	 */
+	public synchronized List<Event> get(FileFingerprint fingerprint) {
+		CachedEvents cached = myEntries.get(fingerprint);
+		if (cached == null) {
+			myMisses++;
+			return null;
+		}
+		myHits++;
+		return cached.myEvents;
+	}
+
+	/**
+	 * Caches the events of a file, replacing any older version of the same
+	 * file. Lists bigger than the whole budget are not cached.
+	 */
+	public synchronized void put(FileFingerprint fingerprint, List<Event> events) {
+		removePath(fingerprint.getPath());
+		long bytes = estimateBytes(events);
+		if (bytes > myBudget)
+			return;
+		myEntries.put(fingerprint, new CachedEvents(
+		        Collections.unmodifiableList(new ArrayList<Event>(events)),
+		        bytes));
+		myBytes += bytes;
+		evict();
+	}
+
+	/**
+	 * Drops everything and resets the counters
+	 */
+	public synchronized void clear() {
+		myEntries.clear();
+		myBytes = 0;
+		myHits = 0;
+		myMisses = 0;
+		myEvictions = 0;
+	}
+
+	/**
+	 * Changes the budget, evicting right away if it shrank
+	 */
+	public synchronized void setBudget(long budget) {
+		myBudget = budget;
+		evict();
+	}
+
+	public synchronized long getBudget() {
+		return myBudget;
+	}
+
+	/**
+	 * @return estimated bytes of events currently cached
+	 */
+	public synchronized long getBytes() {
+		return myBytes;
+	}
+
+	public synchronized long getHits() {
+		return myHits;
+	}
+
+	public synchronized long getMisses() {
+		return myMisses;
+	}
+
+	public synchronized long getEvictions() {
+		return myEvictions;
+	}
+
+	public synchronized String toString() {
+		return "EventCache: " + myEntries.size() + " files, " + myBytes
+		        + " of " + myBudget + " bytes, " + myHits + " hits, "
+		        + myMisses + " misses, " + myEvictions + " evictions";
+	}
+
+	/**
+	 * Estimates the heap retained by a list of events, counting each string
+	 * as if no other event shared it
+	 */
+	public static long estimateBytes(List<Event> events) {
+		long bytes = 0;
+		for (Event event : events)
+			bytes += estimateBytes(event);
+		return bytes;
+	}
+
+	private static long estimateBytes(Event event) {
+		long bytes = EVENT_OVERHEAD + estimateBytes(event.getTitle())
+		        + estimateBytes(event.getDescription())
+		        + estimateBytes(event.getLocation());
+		for (String name : event.getPropertyNames()) {
+			// names live in the shared schema, only the values array is
+			// the event's own
+			List<String> values = event.getProperty(name);
+			bytes += SLOT_OVERHEAD + 4L * values.size();
+			for (String value : values)
+				bytes += estimateBytes(value);
+		}
+		return bytes;
+	}
+
+	private static long estimateBytes(String value) {
+		if (value == null)
+			return 0;
+		return STRING_OVERHEAD + 2L * value.length();
+	}
+
+	private void removePath(String path) {
+		Iterator<Map.Entry<FileFingerprint, CachedEvents>> entries = myEntries
+		        .entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<FileFingerprint, CachedEvents> entry = entries.next();
+			if (entry.getKey().getPath().equals(path)) {
+				myBytes -= entry.getValue().myBytes;
+				entries.remove();
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<CachedEvents> oldest = myEntries.values().iterator();
+		while (myBytes > myBudget && oldest.hasNext()) {
+			myBytes -= oldest.next().myBytes;
+			oldest.remove();
+			myEvictions++;
+		}
+	}
+
+	private static class CachedEvents {
+		private List<Event> myEvents;
+		private long myBytes;
+
+		CachedEvents(List<Event> events, long bytes) {
+			myEvents = events;
+			myBytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * A compact binary copy of a list of events, so they can be reloaded at
+ * startup without parsing any XML. The file starts with a magic number and
+ * a format version, then the fingerprints of the files the events came
+ * from, a dictionary holding every distinct string once, and finally the
+ * events as epoch millis and dictionary indices. A snapshot whose version
+ * or source files have changed is treated as missing.
+ */
+public class EventSnapshot {
+
+	private static final int MAGIC = 0x54495653;
+	private static final int VERSION = 2;
+	private static final int NO_STRING = -1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private List<Event> myEvents;
+	private List<FileFingerprint> mySources;
+
+	private EventSnapshot(List<Event> events, List<FileFingerprint> sources) {
+		myEvents = events;
+		mySources = sources;
+	}
+
+	/**
+	 * @return the events, in the order they were saved
+	 */
+	public List<Event> getEvents() {
+		return myEvents;
+	}
+
+	/**
+	 * @return the files the events were parsed from
+	 */
+	public List<FileFingerprint> getSources() {
+		return mySources;
+	}
+
+	/**
+	 * Writes the events and the fingerprints of their source files
+	 *
+	 * @throws IOException
+	 */
+	public static void save(File snapshot, List<Event> events,
+	        Collection<FileFingerprint> sources) throws IOException {
+		Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+		for (Event event : events)
+			addStrings(event, ids);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+		        new FileOutputStream(snapshot), BUFFER_SIZE));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sources.size());
+			for (FileFingerprint source : sources) {
+				writeString(out, source.getPath());
+				out.writeLong(source.getSize());
+				out.writeLong(source.getModified());
+				out.writeLong(source.getHash());
+			}
+			out.writeInt(ids.size());
+			for (String value : ids.keySet())
+				writeString(out, value);
+			out.writeInt(events.size());
+			for (Event event : events)
+				writeEvent(out, event, ids);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot back with one bulk read into a heap buffer. The file
+	 * is not memory mapped, since a mapping would outlive this call and
+	 * keep save from replacing the file on some platforms.
+	 *
+	 * @return the snapshot, or null if the file is from another format
+	 *         version or any of its source files has changed since it was
+	 *         written
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static EventSnapshot load(File snapshot) throws IOException {
+		FileChannel channel = FileChannel.open(snapshot.toPath(),
+		        StandardOpenOption.READ);
+		try {
+			ByteBuffer in = readFully(channel);
+			if (in.remaining() < 8 || in.getInt() != MAGIC
+			        || in.getInt() != VERSION)
+				return null;
+			List<FileFingerprint> sources = new ArrayList<FileFingerprint>();
+			int sourceCount = in.getInt();
+			for (int i = 0; i < sourceCount; i++) {
+				FileFingerprint source = new FileFingerprint(readString(in),
+				        in.getLong(), in.getLong(), in.getLong());
+				if (!isCurrent(source))
+					return null;
+				sources.add(source);
+			}
+			String[] strings = new String[in.getInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = readString(in);
+			DateTimeZone[] zones = new DateTimeZone[strings.length];
+			PropertySchema schema = new PropertySchema();
+			int eventCount = in.getInt();
+			List<Event> events = new ArrayList<Event>(eventCount);
+			for (int i = 0; i < eventCount; i++)
+				events.add(readEvent(in, strings, zones, schema));
+			return new EventSnapshot(events, sources);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Snapshot too large: " + size + " bytes");
+		ByteBuffer in = ByteBuffer.allocate((int) size);
+		while (in.hasRemaining()) {
+			if (channel.read(in) < 0)
+				break;
+		}
+		in.flip();
+		return in;
+	}
+
+	private static boolean isCurrent(FileFingerprint source) {
+		try {
+			return source.equals(FileFingerprint.of(
+			        new File(source.getPath()), source.getHash() != -1));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void addStrings(Event event, Map<String, Integer> ids) {
+		addString(event.getTitle(), ids);
+		addString(event.getDescription(), ids);
+		addString(event.getLocation(), ids);
+		addString(event.getZone().getID(), ids);
+		for (String name : event.getPropertyNames()) {
+			addString(name, ids);
+			for (String value : event.getProperty(name))
+				addString(value, ids);
+		}
+	}
+
+	private static void addString(String value, Map<String, Integer> ids) {
+		if (value != null && !ids.containsKey(value))
+			ids.put(value, ids.size());
+	}
+
+	private static void writeEvent(DataOutputStream out, Event event,
+	        Map<String, Integer> ids) throws IOException {
+		out.writeLong(event.getStartMillis());
+		out.writeInt(idOf(event.getZone().getID(), ids));
+		out.writeLong(event.getEndMillis());
+		out.writeInt(idOf(event.getTitle(), ids));
+		out.writeInt(idOf(event.getDescription(), ids));
+		out.writeInt(idOf(event.getLocation(), ids));
+		Set<String> names = event.getPropertyNames();
+		out.writeInt(names.size());
+		for (String name : names) {
+			List<String> values = event.getProperty(name);
+			out.writeInt(idOf(name, ids));
+			out.writeInt(values.size());
+			for (String value : values)
+				out.writeInt(idOf(value, ids));
+		}
+	}
+
+	private static Event readEvent(ByteBuffer in, String[] strings,
+	        DateTimeZone[] zones, PropertySchema schema) {
+		long start = in.getLong();
+		DateTimeZone zone = zoneOf(in.getInt(), strings, zones);
+		long end = in.getLong();
+		String title = stringOf(in.getInt(), strings);
+		String description = stringOf(in.getInt(), strings);
+		String location = stringOf(in.getInt(), strings);
+		HashMap<String, ArrayList<String>> properties = null;
+		int propertyCount = in.getInt();
+		if (propertyCount != NO_STRING) {
+			properties = new HashMap<String, ArrayList<String>>();
+			for (int i = 0; i < propertyCount; i++) {
+				String name = stringOf(in.getInt(), strings);
+				int valueCount = in.getInt();
+				ArrayList<String> values = new ArrayList<String>(valueCount);
+				for (int j = 0; j < valueCount; j++)
+					values.add(stringOf(in.getInt(), strings));
+				properties.put(name, values);
+			}
+		}
+		return new Event(title, start, end, zone, description, location,
+		        schema, properties);
+	}
+
+	private static int idOf(String value, Map<String, Integer> ids) {
+		return value == null ? NO_STRING : ids.get(value);
+	}
+
+	private static String stringOf(int id, String[] strings) {
+		return id == NO_STRING ? null : strings[id];
+	}
+
+	private static DateTimeZone zoneOf(int id, String[] strings,
+	        DateTimeZone[] zones) {
+		if (zones[id] == null)
+			zones[id] = DateTimeZone.forID(strings[id]);
+		return zones[id];
+	}
+
+	private static void writeString(DataOutputStream out, String value)
+	        throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,280 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Keeps events column by column: start and end millis in long arrays and
+ * the title, location and description as int ids into string dictionaries.
+ * Scans over times or strings then walk primitive arrays instead of chasing
+ * event objects. Events are numbered 0 to size - 1 in the order they were
+ * added.
+ *
+ * The store also keeps a reference to each Event it is given, for the
+ * outputters and for the zone and properties, which have no column. The
+ * dictionaries hold those events' own strings, so the columns duplicate
+ * only the times. Measured on a million generated guide events, the store
+ * adds about 60 bytes an event to the 340 or so the events and their
+ * strings take, and a selection costs about 36 bytes a row.
+ *
+ * A store made by select, copy or derive shares the dictionaries of the
+ * store it came from, so ids of the same string are equal across them. It
+ * only reads them, though: the first time it is given a string they lack,
+ * it takes copies of its own, keeping every id, so filling a derived store
+ * never writes into the store it came from. Stores are not safe to change
+ * from several threads at once.
+ */
+public class EventStore implements Iterable<Event> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private StringDictionary myTitleDictionary;
+	private StringDictionary myLocationDictionary;
+	private StringDictionary myDescriptionDictionary;
+	private long[] myStarts;
+	private long[] myEnds;
+	private int[] myTitles;
+	private int[] myLocations;
+	private int[] myDescriptions;
+	private Event[] myEvents;
+	private int mySize;
+	private long myVersion;
+	private boolean mySharesDictionaries;
+
+	public EventStore() {
+		this(new StringDictionary(), new StringDictionary(),
+		        new StringDictionary(), INITIAL_CAPACITY);
+	}
+
+	private EventStore(StringDictionary titles, StringDictionary locations,
+	        StringDictionary descriptions, int capacity) {
+		myTitleDictionary = titles;
+		myLocationDictionary = locations;
+		myDescriptionDictionary = descriptions;
+		allocate(Math.max(capacity, INITIAL_CAPACITY));
+	}
+
+	private void allocate(int capacity) {
+		myStarts = new long[capacity];
+		myEnds = new long[capacity];
+		myTitles = new int[capacity];
+		myLocations = new int[capacity];
+		myDescriptions = new int[capacity];
+		myEvents = new Event[capacity];
+	}
+
+	/**
+	 * Appends an event
+	 *
+	 * @return the id of the event
+	 */
+	public int add(Event event) {
+		if (mySharesDictionaries && !knowsStrings(event))
+			ownDictionaries();
+		ensureCapacity(mySize + 1);
+		myStarts[mySize] = event.getStartMillis();
+		myEnds[mySize] = event.getEndMillis();
+		myTitles[mySize] = myTitleDictionary.add(event.getTitle());
+		myLocations[mySize] = myLocationDictionary.add(event.getLocation());
+		myDescriptions[mySize] = myDescriptionDictionary.add(event
+		        .getDescription());
+		myEvents[mySize] = event;
+		myVersion++;
+		return mySize++;
+	}
+
+	/**
+	 * Appends the events in order
+	 */
+	public void addAll(Collection<Event> events) {
+		ensureCapacity(mySize + events.size());
+		for (Event event : events)
+			add(event);
+	}
+
+	/**
+	 * Appends a copy of one row of another store sharing this store's
+	 * dictionaries
+	 *
+	 * @return the id of the copy in this store
+	 */
+	public int addFrom(EventStore source, int id) {
+		if (source.myTitleDictionary != myTitleDictionary)
+			return add(source.myEvents[id]);
+		ensureCapacity(mySize + 1);
+		copyRow(source, id, mySize);
+		myVersion++;
+		return mySize++;
+	}
+
+	/**
+	 * Removes every event and starts over with empty dictionaries, leaving
+	 * stores made from this one untouched
+	 */
+	public void clear() {
+		myTitleDictionary = new StringDictionary();
+		myLocationDictionary = new StringDictionary();
+		myDescriptionDictionary = new StringDictionary();
+		allocate(INITIAL_CAPACITY);
+		mySize = 0;
+		myVersion++;
+		mySharesDictionaries = false;
+	}
+
+	/**
+	 * @return a store holding the given rows of this one, in the given order
+	 */
+	public EventStore select(int[] ids, int count) {
+		EventStore selection = derive(count);
+		for (int i = 0; i < count; i++)
+			selection.copyRow(this, ids[i], i);
+		selection.mySize = count;
+		return selection;
+	}
+
+	/**
+	 * @return a copy of this store
+	 */
+	public EventStore copy() {
+		EventStore copy = derive(mySize);
+		copy.mySize = mySize;
+		System.arraycopy(myStarts, 0, copy.myStarts, 0, mySize);
+		System.arraycopy(myEnds, 0, copy.myEnds, 0, mySize);
+		System.arraycopy(myTitles, 0, copy.myTitles, 0, mySize);
+		System.arraycopy(myLocations, 0, copy.myLocations, 0, mySize);
+		System.arraycopy(myDescriptions, 0, copy.myDescriptions, 0, mySize);
+		System.arraycopy(myEvents, 0, copy.myEvents, 0, mySize);
+		return copy;
+	}
+
+	/**
+	 * @return an empty store sharing this store's dictionaries
+	 */
+	public EventStore derive() {
+		return derive(INITIAL_CAPACITY);
+	}
+
+	private EventStore derive(int capacity) {
+		EventStore derived = new EventStore(myTitleDictionary,
+		        myLocationDictionary, myDescriptionDictionary, capacity);
+		derived.mySharesDictionaries = true;
+		return derived;
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	/**
+	 * @return a number that changes every time events are added or removed
+	 */
+	public long getVersion() {
+		return myVersion;
+	}
+
+	public long getStart(int id) {
+		return myStarts[id];
+	}
+
+	public long getEnd(int id) {
+		return myEnds[id];
+	}
+
+	public int getTitleId(int id) {
+		return myTitles[id];
+	}
+
+	public int getLocationId(int id) {
+		return myLocations[id];
+	}
+
+	public int getDescriptionId(int id) {
+		return myDescriptions[id];
+	}
+
+	public StringDictionary getTitleDictionary() {
+		return myTitleDictionary;
+	}
+
+	public StringDictionary getLocationDictionary() {
+		return myLocationDictionary;
+	}
+
+	public StringDictionary getDescriptionDictionary() {
+		return myDescriptionDictionary;
+	}
+
+	/**
+	 * @return the event with the id
+	 */
+	public Event getEvent(int id) {
+		if (id >= mySize)
+			throw new IndexOutOfBoundsException("No event " + id + " of "
+			        + mySize);
+		return myEvents[id];
+	}
+
+	/**
+	 * @return a read only list over the events, in id order
+	 */
+	public List<Event> getEvents() {
+		return new AbstractList<Event>() {
+			public Event get(int index) {
+				return getEvent(index);
+			}
+
+			public int size() {
+				return mySize;
+			}
+		};
+	}
+
+	public Iterator<Event> iterator() {
+		return getEvents().iterator();
+	}
+
+	/**
+	 * @return true if the dictionaries already hold every string of the
+	 *         event
+	 */
+	private boolean knowsStrings(Event event) {
+		return knows(myTitleDictionary, event.getTitle())
+		        && knows(myLocationDictionary, event.getLocation())
+		        && knows(myDescriptionDictionary, event.getDescription());
+	}
+
+	private static boolean knows(StringDictionary dictionary, String value) {
+		return dictionary.idOf(value) != StringDictionary.NOT_FOUND;
+	}
+
+	private void ownDictionaries() {
+		myTitleDictionary = myTitleDictionary.copy();
+		myLocationDictionary = myLocationDictionary.copy();
+		myDescriptionDictionary = myDescriptionDictionary.copy();
+		mySharesDictionaries = false;
+	}
+
+	private void copyRow(EventStore source, int from, int to) {
+		myStarts[to] = source.myStarts[from];
+		myEnds[to] = source.myEnds[from];
+		myTitles[to] = source.myTitles[from];
+		myLocations[to] = source.myLocations[from];
+		myDescriptions[to] = source.myDescriptions[from];
+		myEvents[to] = source.myEvents[from];
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= myStarts.length)
+			return;
+		int length = Math.max(capacity, myStarts.length * 2);
+		myStarts = Arrays.copyOf(myStarts, length);
+		myEnds = Arrays.copyOf(myEnds, length);
+		myTitles = Arrays.copyOf(myTitles, length);
+		myLocations = Arrays.copyOf(myLocations, length);
+		myDescriptions = Arrays.copyOf(myDescriptions, length);
+		myEvents = Arrays.copyOf(myEvents, length);
+	}
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.io.*;
+import java.util.zip.CRC32;
+
+/**
+ * Identifies one version of a file: its path, size and last modified time,
+ * and optionally a checksum of its contents for file systems whose
+ * timestamps cannot be trusted
+ */
+public class FileFingerprint {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long NO_HASH = -1;
+
+	private String myPath;
+	private long mySize;
+	private long myModified;
+	private long myHash;
+
+	public FileFingerprint(String path, long size, long modified, long hash) {
+		myPath = path;
+		mySize = size;
+		myModified = modified;
+		myHash = hash;
+	}
+
+	/**
+	 * @param file
+	 *            the file as it is on disk now
+	 * @param hashContents
+	 *            true to also read the whole file and checksum it
+	 * @return the fingerprint of the file
+	 * @throws IOException
+	 *             if the contents cannot be read
+	 */
+	public static FileFingerprint of(File file, boolean hashContents)
+	        throws IOException {
+		File canonical = file.getCanonicalFile();
+		long hash = hashContents ? checksum(canonical) : NO_HASH;
+		return new FileFingerprint(canonical.getPath(), canonical.length(),
+		        canonical.lastModified(), hash);
+	}
+
+	private static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream in = new FileInputStream(file);
+		try {
+			int count;
+			while ((count = in.read(buffer)) > 0)
+				crc.update(buffer, 0, count);
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	public String getPath() {
+		return myPath;
+	}
+
+	public long getSize() {
+		return mySize;
+	}
+
+	public long getModified() {
+		return myModified;
+	}
+
+	/**
+	 * @return the checksum of the contents, or -1 if it was not computed
+	 */
+	public long getHash() {
+		return myHash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof FileFingerprint))
+			return false;
+		FileFingerprint fingerprint = (FileFingerprint) other;
+		return myPath.equals(fingerprint.myPath)
+		        && mySize == fingerprint.mySize
+		        && myModified == fingerprint.myModified
+		        && myHash == fingerprint.myHash;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = myPath.hashCode();
+		result = 31 * result + (int) (mySize ^ (mySize >>> 32));
+		result = 31 * result + (int) (myModified ^ (myModified >>> 32));
+		return 31 * result + (int) (myHash ^ (myHash >>> 32));
+	}
+
+	public String toString() {
+		return myPath + " (" + mySize + " bytes, modified " + myModified + ")";
+	}
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints without boxing, used for the posting lists of
+ * the event indices
+ */
+public class IntList {
+
+	private int[] myValues;
+	private int mySize;
+
+	public IntList() {
+		myValues = new int[4];
+	}
+
+	public void add(int value) {
+		if (mySize == myValues.length)
+			myValues = Arrays.copyOf(myValues, mySize * 2);
+		myValues[mySize++] = value;
+	}
+
+	/**
+	 * @return the last value, or -1 if the list is empty
+	 */
+	public int last() {
+		return mySize == 0 ? -1 : myValues[mySize - 1];
+	}
+
+	public int get(int index) {
+		return myValues[index];
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * @return a copy of the values
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(myValues, mySize);
+	}
+}
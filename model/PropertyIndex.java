@@ -0,0 +1,96 @@
+package model;
+
+import java.util.*;
+
+/**
+ * An inverted index from each (property name, value) pair of a store's
+ * events to the sorted ids of the events having that value, so questions
+ * such as "which programmes is this actor in" are answered by fetching one
+ * posting list. Every property name is indexed as events are added.
+ */
+public class PropertyIndex {
+
+	private static final int[] NO_IDS = new int[0];
+
+	private EventStore myStore;
+	private Map<String, Map<String, IntList>> myPostings;
+	private int myIndexed;
+	private long myVersion;
+
+	public PropertyIndex(EventStore store) {
+		myStore = store;
+		reset();
+		update();
+	}
+
+	private void reset() {
+		myPostings = new HashMap<String, Map<String, IntList>>();
+		myIndexed = 0;
+		myVersion = myStore.getVersion() - myStore.size();
+	}
+
+	/**
+	 * Indexes the events added to the store since the last update
+	 */
+	public void update() {
+		if (myStore.getVersion() != myVersion + myStore.size() - myIndexed)
+			reset();
+		for (int id = myIndexed; id < myStore.size(); id++)
+			addEvent(id, myStore.getEvent(id));
+		myIndexed = myStore.size();
+		myVersion = myStore.getVersion();
+	}
+
+	/**
+	 * @return the ids of the events with the value among the values of the
+	 *         property, in increasing order
+	 */
+	public int[] idsWith(String property, String value) {
+		update();
+		Map<String, IntList> values = myPostings.get(property);
+		if (values == null)
+			return NO_IDS;
+		IntList ids = values.get(value);
+		return ids == null ? NO_IDS : ids.toArray();
+	}
+
+	/**
+	 * @return how many events have the value, without listing them
+	 */
+	public int countWith(String property, String value) {
+		update();
+		Map<String, IntList> values = myPostings.get(property);
+		if (values == null)
+			return 0;
+		IntList ids = values.get(value);
+		return ids == null ? 0 : ids.size();
+	}
+
+	/**
+	 * @return the names of all properties seen so far
+	 */
+	public Set<String> getPropertyNames() {
+		update();
+		return Collections.unmodifiableSet(myPostings.keySet());
+	}
+
+	private void addEvent(int id, Event event) {
+		for (String name : event.getPropertyNames()) {
+			Map<String, IntList> values = myPostings.get(name);
+			if (values == null) {
+				values = new HashMap<String, IntList>();
+				myPostings.put(name, values);
+			}
+			for (String value : event.getProperty(name)) {
+				IntList ids = values.get(value);
+				if (ids == null) {
+					ids = new IntList();
+					values.put(value, ids);
+				}
+				// a value listed twice on one event is posted once
+				if (ids.last() != id)
+					ids.add(id);
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Numbers the extra property names used by one kind of source, so each
+ * event only keeps an array of values indexed by slot instead of its own
+ * map. A schema only ever grows: once a name has a slot, the slot never
+ * changes, so callers can look it up once and reuse it for every event of
+ * the schema. Lookups need no locking; adding names is synchronized.
+ */
+public class PropertySchema {
+
+	private static final PropertySchema DEFAULT = new PropertySchema();
+	private static final String[][] NO_VALUES = new String[0][];
+
+	private volatile Map<String, Integer> mySlots;
+	private volatile String[] myNames;
+
+	public PropertySchema() {
+		mySlots = Collections.emptyMap();
+		myNames = new String[0];
+	}
+
+	/**
+	 * @return the schema shared by events built without one of their own
+	 */
+	public static PropertySchema getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return the slot of the name, or -1 if no event of this schema has it
+	 */
+	public int indexOf(String name) {
+		Integer slot = mySlots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @return the slot of the name, giving it the next free one if it is
+	 *         new
+	 */
+	public int slotOf(String name) {
+		Integer slot = mySlots.get(name);
+		if (slot != null)
+			return slot;
+		return addName(name);
+	}
+
+	private synchronized int addName(String name) {
+		Integer slot = mySlots.get(name);
+		if (slot != null)
+			return slot;
+		Map<String, Integer> slots = new HashMap<String, Integer>(mySlots);
+		String[] names = Arrays.copyOf(myNames, myNames.length + 1);
+		names[myNames.length] = name;
+		slots.put(name, myNames.length);
+		myNames = names;
+		mySlots = slots;
+		return names.length - 1;
+	}
+
+	/**
+	 * @return the name in the slot
+	 */
+	public String getName(int slot) {
+		return myNames[slot];
+	}
+
+	/**
+	 * @return how many names have slots
+	 */
+	public int size() {
+		return myNames.length;
+	}
+
+	/**
+	 * Lays out property values by slot, adding slots for new names
+	 *
+	 * @param properties
+	 *            names and their values, may be null
+	 * @return the values of each slot, null for slots the map does not have
+	 */
+	String[][] toValues(Map<String, ? extends List<String>> properties) {
+		if (properties == null || properties.isEmpty())
+			return NO_VALUES;
+		int[] slots = new int[properties.size()];
+		int length = 0;
+		int i = 0;
+		for (String name : properties.keySet()) {
+			slots[i] = slotOf(name);
+			length = Math.max(length, slots[i++] + 1);
+		}
+		String[][] values = new String[length][];
+		i = 0;
+		for (List<String> list : properties.values()) {
+			values[slots[i++]] = list.toArray(new String[list.size()]);
+		}
+		return values;
+	}
+}
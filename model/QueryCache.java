@@ -0,0 +1,112 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Keeps the events found by recent queries, keyed by a normalized
+ * description of the filters applied, so asking the same question again,
+ * or going back to an earlier one, does not filter the events again. Each
+ * answer remembers the version of the store it was computed from and is
+ * dropped once the store has changed. Least recently used queries are
+ * evicted once more than a set number are kept.
+ */
+public class QueryCache {
+
+	private int myCapacity;
+	private LinkedHashMap<List<String>, CachedQuery> myEntries;
+	private long myHits;
+	private long myMisses;
+	private long myEvictions;
+
+	/**
+	 * @param capacity
+	 *            most queries to keep
+	 */
+	public QueryCache(int capacity) {
+		myCapacity = capacity;
+		myEntries = new LinkedHashMap<List<String>, CachedQuery>(16, 0.75f,
+		        true);
+	}
+
+	/**
+	 * @param query
+	 *            one entry per filter applied, in any order
+	 * @return the events the query found in this version of the store, or
+	 *         null if they are not cached
+	 */
+	public synchronized EventStore get(List<String> query, long version) {
+		List<String> key = normalize(query);
+		CachedQuery cached = myEntries.get(key);
+		if (cached == null || cached.myVersion != version) {
+			if (cached != null)
+				myEntries.remove(key);
+			myMisses++;
+			return null;
+		}
+		myHits++;
+		return cached.myEvents;
+	}
+
+	/**
+	 * Caches what a query found in a version of the store. The events must
+	 * not be changed afterwards.
+	 */
+	public synchronized void put(List<String> query, long version,
+	        EventStore events) {
+		myEntries.put(normalize(query), new CachedQuery(events, version));
+		Iterator<CachedQuery> oldest = myEntries.values().iterator();
+		while (myEntries.size() > myCapacity && oldest.hasNext()) {
+			oldest.next();
+			oldest.remove();
+			myEvictions++;
+		}
+	}
+
+	/**
+	 * Drops every query, for when the events are replaced
+	 */
+	public synchronized void clear() {
+		myEntries.clear();
+	}
+
+	public synchronized int getCapacity() {
+		return myCapacity;
+	}
+
+	public synchronized long getHits() {
+		return myHits;
+	}
+
+	public synchronized long getMisses() {
+		return myMisses;
+	}
+
+	public synchronized long getEvictions() {
+		return myEvictions;
+	}
+
+	public synchronized String toString() {
+		return "QueryCache: " + myEntries.size() + " of " + myCapacity
+		        + " queries, " + myHits + " hits, " + myMisses + " misses, "
+		        + myEvictions + " evictions";
+	}
+
+	/**
+	 * Filters commute, so the order they were applied in does not matter
+	 */
+	private static List<String> normalize(List<String> query) {
+		List<String> key = new ArrayList<String>(query);
+		Collections.sort(key);
+		return key;
+	}
+
+	private static class CachedQuery {
+		private EventStore myEvents;
+		private long myVersion;
+
+		CachedQuery(EventStore events, long version) {
+			myEvents = events;
+			myVersion = version;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package model;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+
+/**
+ * Replaces recurring events with their occurrences inside a window of time.
+ * A recurring event carries its rule in the RECURRENCE property and stands
+ * for the whole series; everything else passes through untouched.
+ * Occurrences do not carry the rule, so expanding an expanded list again
+ * changes nothing. The expansion is lazy, so only the occurrences that are
+ * actually visited are ever created.
+ */
+public class RecurrenceExpander {
+
+	/**
+	 * Name of the event property holding the recurrence rule
+	 */
+	public static final String RECURRENCE = "recurrence";
+
+	/**
+	 * @return true if the event stands for a series of occurrences
+	 */
+	public static boolean isRecurring(Event event) {
+		List<String> rule = event.getProperty(RECURRENCE);
+		return rule != null && !rule.isEmpty();
+	}
+
+	/**
+	 * @param events
+	 *            events that may include recurring series
+	 * @param from
+	 *            earliest occurrence start to produce, inclusive
+	 * @param to
+	 *            latest occurrence start to produce, inclusive
+	 * @return the events with each series replaced by its occurrences in the
+	 *         window, computed as the result is iterated
+	 */
+	public static Iterable<Event> expand(final Iterable<Event> events,
+	        final DateTime from, final DateTime to) {
+		return new Iterable<Event>() {
+			public Iterator<Event> iterator() {
+				return expand(events.iterator(), from, to);
+			}
+		};
+	}
+
+	/**
+	 * Same as expand, collected into a list for callers that need to index
+	 * or revisit the events
+	 */
+	public static List<Event> expandToList(Iterable<Event> events,
+	        DateTime from, DateTime to) {
+		List<Event> expanded = new ArrayList<Event>();
+		for (Event event : expand(events, from, to))
+			expanded.add(event);
+		return expanded;
+	}
+
+	/**
+	 * Same as expand, for a column store
+	 *
+	 * @return the store itself if none of its events recur, otherwise a
+	 *         store sharing its dictionaries with each series replaced
+	 */
+	public static EventStore expand(EventStore events, DateTime from,
+	        DateTime to) {
+		int first = 0;
+		while (first < events.size() && ruleOf(events.getEvent(first)) == null)
+			first++;
+		if (first == events.size())
+			return events;
+		EventStore expanded = events.derive();
+		for (int id = 0; id < first; id++)
+			expanded.addFrom(events, id);
+		for (Event event : expand(events.getEvents().subList(first,
+		        events.size()), from, to))
+			expanded.add(event);
+		return expanded;
+	}
+
+	private static Iterator<Event> expand(final Iterator<Event> events,
+	        final DateTime from, final DateTime to) {
+		return new Iterator<Event>() {
+			private Event mySeries;
+			private Iterator<DateTime> myStarts = Collections
+			        .<DateTime> emptyList().iterator();
+			private Event myNext;
+
+			public boolean hasNext() {
+				while (myNext == null) {
+					if (myStarts.hasNext()) {
+						DateTime start = myStarts.next();
+						long length = mySeries.getEndMillis()
+						        - mySeries.getStartMillis();
+						myNext = mySeries.reschedule(start, start.plus(length));
+					} else if (events.hasNext()) {
+						Event event = events.next();
+						RecurrenceRule rule = ruleOf(event);
+						if (rule == null) {
+							myNext = event;
+						} else {
+							// every occurrence shares one copy of the values
+							mySeries = event.withoutProperty(RECURRENCE);
+							myStarts = rule.occurrences(event.getStartTime(),
+							        from, to);
+						}
+					} else {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			public Event next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Event next = myNext;
+				myNext = null;
+				return next;
+			}
+		};
+	}
+
+	private static RecurrenceRule ruleOf(Event event) {
+		if (!isRecurring(event))
+			return null;
+		try {
+			return RecurrenceRule.parse(event.getProperty(RECURRENCE).get(0));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package model;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.Months;
+import org.joda.time.Weeks;
+import org.joda.time.Years;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * The repeating part of an iCalendar RRULE (FREQ, INTERVAL, COUNT, UNTIL and
+ * BYDAY for weekly rules). Occurrences are only ever produced one at a time
+ * and only inside a requested window, so an endless series costs no more
+ * than the occurrences that are actually looked at.
+ */
+public class RecurrenceRule {
+
+	public static enum Frequency {
+		DAILY, WEEKLY, MONTHLY, YEARLY
+	};
+
+	private static final String RRULE = "RRULE:";
+	private static final String[] DAY_NAMES = { "MO", "TU", "WE", "TH", "FR",
+	        "SA", "SU" };
+	private static final DateTimeFormatter UNTIL_DATE_TIME = DateTimeFormat
+	        .forPattern("yyyyMMdd'T'HHmmss");
+	private static final DateTimeFormatter UNTIL_DATE = DateTimeFormat
+	        .forPattern("yyyyMMdd");
+	private static final int DATE_LENGTH = 8;
+
+	private String myRule;
+	private Frequency myFrequency;
+	private int myInterval;
+	private int myCount;
+	private DateTime myUntil;
+	private int[] myDays;
+
+	private RecurrenceRule(String rule) {
+		myRule = rule;
+		myInterval = 1;
+		myCount = -1;
+		for (String part : rule.split(";")) {
+			int equals = part.indexOf('=');
+			if (equals < 0)
+				continue;
+			String name = part.substring(0, equals).trim().toUpperCase();
+			String value = part.substring(equals + 1).trim();
+			if (name.equals("FREQ"))
+				myFrequency = Frequency.valueOf(value.toUpperCase());
+			else if (name.equals("INTERVAL"))
+				myInterval = Integer.parseInt(value);
+			else if (name.equals("COUNT"))
+				myCount = Integer.parseInt(value);
+			else if (name.equals("UNTIL"))
+				myUntil = parseUntil(value);
+			else if (name.equals("BYDAY"))
+				myDays = parseDays(value);
+		}
+		if (myFrequency == null || myInterval < 1)
+			throw new IllegalArgumentException("Unsupported rule: " + rule);
+	}
+
+	/**
+	 * @param recurrence
+	 *            a bare rule such as "FREQ=WEEKLY;BYDAY=TU", or iCalendar text
+	 *            containing an "RRULE:" line
+	 * @return the rule, or null if the text has no rule in it
+	 * @throws IllegalArgumentException
+	 *             if the rule cannot be understood
+	 */
+	public static RecurrenceRule parse(String recurrence) {
+		for (String line : recurrence.split("[\\r\\n]+")) {
+			line = line.trim();
+			if (line.startsWith(RRULE))
+				return new RecurrenceRule(line.substring(RRULE.length()));
+			if (line.startsWith("FREQ="))
+				return new RecurrenceRule(line);
+		}
+		return null;
+	}
+
+	public Frequency getFrequency() {
+		return myFrequency;
+	}
+
+	/**
+	 * Lazily lists the starts of the occurrences that begin inside a window.
+	 * Whole periods before the window are skipped arithmetically rather than
+	 * walked.
+	 *
+	 * @param first
+	 *            start of the first occurrence of the series
+	 * @param from
+	 *            earliest start to return, inclusive
+	 * @param to
+	 *            latest start to return, inclusive
+	 * @return the starts in increasing order
+	 */
+	public Iterator<DateTime> occurrences(final DateTime first,
+	        final DateTime from, final DateTime to) {
+		return new Iterator<DateTime>() {
+			private int myPeriod = firstPeriodNear(first, from);
+			private int myCandidate = 0;
+			private int myProduced = producedBefore(first, myPeriod);
+			private DateTime myNext;
+			private boolean myDone;
+
+			public boolean hasNext() {
+				while (myNext == null && !myDone) {
+					DateTime candidate = candidate(first, myPeriod, myCandidate);
+					if (++myCandidate == candidatesPerPeriod()) {
+						myCandidate = 0;
+						myPeriod++;
+					}
+					if (candidate.isBefore(first))
+						continue;
+					myProduced++;
+					if ((myCount >= 0 && myProduced > myCount)
+					        || (myUntil != null && candidate.isAfter(myUntil))
+					        || candidate.isAfter(to)) {
+						myDone = true;
+					} else if (!candidate.isBefore(from)) {
+						myNext = candidate;
+					}
+				}
+				return myNext != null;
+			}
+
+			public DateTime next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				DateTime next = myNext;
+				myNext = null;
+				return next;
+			}
+		};
+	}
+
+	/**
+	 * @return the index of a period shortly before the window starts, so
+	 *         iteration can begin there instead of at the first occurrence
+	 */
+	private int firstPeriodNear(DateTime first, DateTime from) {
+		LocalDate start = periodStart(first, 0).toLocalDate();
+		LocalDate end = from.withZone(first.getZone()).toLocalDate();
+		int units;
+		switch (myFrequency) {
+		case DAILY:
+			units = Days.daysBetween(start, end).getDays();
+			break;
+		case WEEKLY:
+			units = Weeks.weeksBetween(start, end).getWeeks();
+			break;
+		case MONTHLY:
+			units = Months.monthsBetween(start, end).getMonths();
+			break;
+		default:
+			units = Years.yearsBetween(start, end).getYears();
+		}
+		return Math.max(0, units / myInterval - 1);
+	}
+
+	/**
+	 * @return how many occurrences come before the given period
+	 */
+	private int producedBefore(DateTime first, int period) {
+		if (period == 0)
+			return 0;
+		int skipped = 0;
+		for (int i = 0; i < candidatesPerPeriod(); i++) {
+			if (candidate(first, 0, i).isBefore(first))
+				skipped++;
+		}
+		return period * candidatesPerPeriod() - skipped;
+	}
+
+	private int candidatesPerPeriod() {
+		return hasDays() ? myDays.length : 1;
+	}
+
+	private boolean hasDays() {
+		return myFrequency == Frequency.WEEKLY && myDays != null;
+	}
+
+	private DateTime candidate(DateTime first, int period, int index) {
+		DateTime start = periodStart(first, period);
+		if (hasDays())
+			return start.withDayOfWeek(myDays[index]);
+		return start;
+	}
+
+	private DateTime periodStart(DateTime first, int period) {
+		int units = period * myInterval;
+		switch (myFrequency) {
+		case DAILY:
+			return first.plusDays(units);
+		case WEEKLY:
+			if (hasDays())
+				return first.withDayOfWeek(DateTimeConstants.MONDAY)
+				        .plusWeeks(units);
+			return first.plusWeeks(units);
+		case MONTHLY:
+			return first.plusMonths(units);
+		default:
+			return first.plusYears(units);
+		}
+	}
+
+	private static DateTime parseUntil(String value) {
+		if (value.length() == DATE_LENGTH)
+			return UNTIL_DATE.parseDateTime(value).plusDays(1).minusMillis(1);
+		if (value.endsWith("Z"))
+			return UNTIL_DATE_TIME.withZone(DateTimeZone.UTC).parseDateTime(
+			        value.substring(0, value.length() - 1));
+		return UNTIL_DATE_TIME.parseDateTime(value);
+	}
+
+	private static int[] parseDays(String value) {
+		String[] names = value.split(",");
+		int[] days = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i].trim().toUpperCase();
+			// ordinal prefixes such as 1MO only make sense for monthly rules
+			name = name.substring(Math.max(0, name.length() - 2));
+			days[i] = Arrays.asList(DAY_NAMES).indexOf(name) + 1;
+			if (days[i] == 0)
+				throw new IllegalArgumentException("Unknown day: " + names[i]);
+		}
+		Arrays.sort(days);
+		return days;
+	}
+
+	public String toString() {
+		return myRule;
+	}
+}
@@ -0,0 +1,206 @@
+package model;
+
+import java.util.*;
+
+/**
+ * The ids of a store's events sorted by start time, so the events starting
+ * in a range are found with two binary searches instead of a scan. Events
+ * added to the store are merged in by update; if the store was cleared in
+ * the meantime the index starts over.
+ *
+ * Recurring series are not indexed by their first start, since their
+ * occurrences can fall anywhere; they are listed apart by getRecurringIds.
+ */
+public class StartTimeIndex {
+
+	private EventStore myStore;
+	private long[] myStarts;
+	private int[] myIds;
+	private int mySize;
+	private int[] myRecurring;
+	private int myRecurringCount;
+	private int myIndexed;
+	private long myVersion;
+
+	public StartTimeIndex(EventStore store) {
+		myStore = store;
+		reset();
+		update();
+	}
+
+	private void reset() {
+		myStarts = new long[0];
+		myIds = new int[0];
+		mySize = 0;
+		myRecurring = new int[0];
+		myRecurringCount = 0;
+		myIndexed = 0;
+		myVersion = myStore.getVersion() - myStore.size();
+	}
+
+	/**
+	 * Indexes the events added to the store since the last update
+	 */
+	public void update() {
+		int added = myStore.size() - myIndexed;
+		if (myStore.getVersion() != myVersion + added) {
+			reset();
+			added = myStore.size();
+		}
+		if (added == 0)
+			return;
+		long[] starts = new long[added];
+		int[] ids = new int[added];
+		int count = 0;
+		for (int id = myIndexed; id < myStore.size(); id++) {
+			if (RecurrenceExpander.isRecurring(myStore.getEvent(id))) {
+				addRecurring(id);
+			} else {
+				starts[count] = myStore.getStart(id);
+				ids[count++] = id;
+			}
+		}
+		merge(starts, ids, count);
+		myIndexed = myStore.size();
+		myVersion = myStore.getVersion();
+	}
+
+	/**
+	 * @param from
+	 *            earliest start, inclusive
+	 * @param to
+	 *            latest start, inclusive
+	 * @return the ids of the non-recurring events starting in the range, in
+	 *         increasing order
+	 */
+	public int[] idsInRange(long from, long to) {
+		update();
+		int first = lowerBound(from);
+		int last = to == Long.MAX_VALUE ? mySize : lowerBound(to + 1);
+		if (last <= first)
+			return new int[0];
+		int[] ids = Arrays.copyOfRange(myIds, first, last);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * @return how many events start in the range, without listing them
+	 */
+	public int countInRange(long from, long to) {
+		update();
+		int last = to == Long.MAX_VALUE ? mySize : lowerBound(to + 1);
+		return Math.max(0, last - lowerBound(from));
+	}
+
+	/**
+	 * @return the ids of the recurring series, in increasing order
+	 */
+	public int[] getRecurringIds() {
+		update();
+		return Arrays.copyOf(myRecurring, myRecurringCount);
+	}
+
+	/**
+	 * @return the first position whose start is at least the value
+	 */
+	private int lowerBound(long value) {
+		return lowerBound(myStarts, mySize, value);
+	}
+
+	private static int lowerBound(long[] sorted, int size, long value) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private void addRecurring(int id) {
+		if (myRecurringCount == myRecurring.length)
+			myRecurring = Arrays.copyOf(myRecurring,
+			        Math.max(4, myRecurringCount * 2));
+		myRecurring[myRecurringCount++] = id;
+	}
+
+	/**
+	 * Sorts the new entries and merges them with the indexed ones. New ids
+	 * are all larger than indexed ones, so equal starts stay in id order.
+	 */
+	private void merge(long[] starts, int[] ids, int count) {
+		int[] order = sortedOrder(starts, count);
+		long[] mergedStarts = new long[mySize + count];
+		int[] mergedIds = new int[mySize + count];
+		int old = 0;
+		int added = 0;
+		int next = 0;
+		while (old < mySize || added < count) {
+			if (added == count
+			        || (old < mySize && myStarts[old] <= starts[order[added]])) {
+				mergedStarts[next] = myStarts[old];
+				mergedIds[next++] = myIds[old++];
+			} else {
+				mergedStarts[next] = starts[order[added]];
+				mergedIds[next++] = ids[order[added++]];
+			}
+		}
+		myStarts = mergedStarts;
+		myIds = mergedIds;
+		mySize = next;
+	}
+
+	/**
+	 * @return the positions of the first count values in increasing order
+	 *         of value, ties kept in position order
+	 */
+	private static int[] sortedOrder(long[] values, int count) {
+		if (count == 0)
+			return new int[0];
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		int positionBits = 32 - Integer.numberOfLeadingZeros(count);
+		long span = max - min;
+		if (span >= 0 && span < (1L << (63 - positionBits)))
+			return packedOrder(values, count, min, positionBits);
+		return searchedOrder(values, count);
+	}
+
+	/**
+	 * Sorts offset and position packed into one long each, which is much
+	 * faster than ordering positions by their values. Usable whenever the
+	 * values span few enough bits, as the starts of a guide always do.
+	 */
+	private static int[] packedOrder(long[] values, int count, long min,
+	        int positionBits) {
+		long[] packed = new long[count];
+		for (int i = 0; i < count; i++)
+			packed[i] = ((values[i] - min) << positionBits) | i;
+		Arrays.sort(packed);
+		long mask = (1L << positionBits) - 1;
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = (int) (packed[i] & mask);
+		return order;
+	}
+
+	private static int[] searchedOrder(long[] values, int count) {
+		long[] sorted = Arrays.copyOf(values, count);
+		Arrays.sort(sorted);
+		int[] filled = new int[count];
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			int first = lowerBound(sorted, count, values[i]);
+			order[first + filled[first]++] = i;
+		}
+		return order;
+	}
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Gives each distinct string an int id, in the order the strings are first
+ * added, so columns of strings can be kept and compared as ints. Not safe
+ * to add to while another thread reads it.
+ */
+public class StringDictionary {
+
+	/**
+	 * Id standing for a null string
+	 */
+	public static final int NULL_ID = -1;
+
+	/**
+	 * Returned by idOf for strings the dictionary has never seen
+	 */
+	public static final int NOT_FOUND = -2;
+
+	private Map<String, Integer> myIds;
+	private List<String> myStrings;
+
+	public StringDictionary() {
+		this(new HashMap<String, Integer>(), new ArrayList<String>());
+	}
+
+	private StringDictionary(Map<String, Integer> ids, List<String> strings) {
+		myIds = ids;
+		myStrings = strings;
+	}
+
+	/**
+	 * @return a dictionary giving the same ids to the same strings, which
+	 *         can then grow apart from this one
+	 */
+	public StringDictionary copy() {
+		return new StringDictionary(new HashMap<String, Integer>(myIds),
+		        new ArrayList<String>(myStrings));
+	}
+
+	/**
+	 * @return the id of the string, adding it if it is new
+	 */
+	public int add(String value) {
+		if (value == null)
+			return NULL_ID;
+		Integer id = myIds.get(value);
+		if (id == null) {
+			id = myStrings.size();
+			myIds.put(value, id);
+			myStrings.add(value);
+		}
+		return id;
+	}
+
+	/**
+	 * @return the id of the string, NULL_ID for null, or NOT_FOUND if it has
+	 *         never been added
+	 */
+	public int idOf(String value) {
+		if (value == null)
+			return NULL_ID;
+		Integer id = myIds.get(value);
+		return id == null ? NOT_FOUND : id;
+	}
+
+	/**
+	 * @return the string with the id, null for NULL_ID
+	 */
+	public String getString(int id) {
+		return id == NULL_ID ? null : myStrings.get(id);
+	}
+
+	/**
+	 * @return how many distinct strings there are
+	 */
+	public int size() {
+		return myStrings.size();
+	}
+}
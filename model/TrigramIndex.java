@@ -0,0 +1,235 @@
+package model;
+
+import java.util.*;
+
+/**
+ * An inverted index from every three character substring of the titles,
+ * descriptions and locations of a store's events to the strings containing
+ * it, and from each string to the events using it. Strings are indexed once
+ * per distinct value through the store's dictionaries, so a description
+ * repeated across reruns is indexed once.
+ *
+ * A keyword of three or more characters can only be in a string holding
+ * all of the keyword's trigrams, so intersecting their posting lists gives
+ * a few candidate strings, which are then checked with contains. The work
+ * grows with the number of candidates rather than with the amount of text.
+ */
+public class TrigramIndex {
+
+	private static final int FIELDS = 3;
+	private static final int GRAM = 3;
+
+	private EventStore myStore;
+	private StringDictionary[] myDictionaries;
+	private PostingMap[] myStringsByTrigram;
+	private List<List<IntList>> myEventsByString;
+	private int[] myIndexedStrings;
+	private int myIndexed;
+	private long myVersion;
+
+	public TrigramIndex(EventStore store) {
+		myStore = store;
+		reset();
+		update();
+	}
+
+	private void reset() {
+		myDictionaries = new StringDictionary[] {
+		        myStore.getTitleDictionary(),
+		        myStore.getDescriptionDictionary(),
+		        myStore.getLocationDictionary() };
+		myStringsByTrigram = new PostingMap[FIELDS];
+		myEventsByString = new ArrayList<List<IntList>>(FIELDS);
+		for (int field = 0; field < FIELDS; field++) {
+			myStringsByTrigram[field] = new PostingMap();
+			myEventsByString.add(new ArrayList<IntList>());
+		}
+		myIndexedStrings = new int[FIELDS];
+		myIndexed = 0;
+		myVersion = myStore.getVersion() - myStore.size();
+	}
+
+	/**
+	 * Indexes the events added to the store since the last update, and any
+	 * strings they brought
+	 */
+	public void update() {
+		int added = myStore.size() - myIndexed;
+		if (myStore.getVersion() != myVersion + added
+		        || myStore.getTitleDictionary() != myDictionaries[0]) {
+			reset();
+		}
+		for (int id = myIndexed; id < myStore.size(); id++) {
+			addEvent(id, 0, myStore.getTitleId(id));
+			addEvent(id, 1, myStore.getDescriptionId(id));
+			addEvent(id, 2, myStore.getLocationId(id));
+		}
+		myIndexed = myStore.size();
+		myVersion = myStore.getVersion();
+	}
+
+	/**
+	 * Finds the events whose title, description or location contains the
+	 * keyword
+	 *
+	 * @return the ids of the events in increasing order, or null if the
+	 *         keyword is too short to look up, in which case the caller
+	 *         must scan
+	 */
+	public int[] idsContaining(String keyword) {
+		if (keyword.length() < GRAM)
+			return null;
+		update();
+		long[] trigrams = trigramsOf(keyword);
+		IntList events = new IntList();
+		for (int field = 0; field < FIELDS; field++) {
+			for (int string : candidateStrings(field, trigrams)) {
+				if (!myDictionaries[field].getString(string).contains(keyword))
+					continue;
+				IntList users = myEventsByString.get(field).get(string);
+				for (int i = 0; i < users.size(); i++)
+					events.add(users.get(i));
+			}
+		}
+		// an event can match through more than one of its fields
+		int[] ids = events.toArray();
+		Arrays.sort(ids);
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (count == 0 || ids[count - 1] != ids[i])
+				ids[count++] = ids[i];
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	/**
+	 * @return the strings of the field holding every trigram, by
+	 *         intersecting posting lists from the shortest up
+	 */
+	private int[] candidateStrings(int field, long[] trigrams) {
+		IntList[] postings = new IntList[trigrams.length];
+		for (int i = 0; i < trigrams.length; i++) {
+			postings[i] = myStringsByTrigram[field].get(trigrams[i]);
+			if (postings[i] == null)
+				return new int[0];
+		}
+		Arrays.sort(postings, new Comparator<IntList>() {
+			public int compare(IntList a, IntList b) {
+				return a.size() - b.size();
+			}
+		});
+		int[] candidates = postings[0].toArray();
+		int count = candidates.length;
+		for (int i = 1; i < postings.length && count > 0; i++)
+			count = intersect(candidates, count, postings[i]);
+		return Arrays.copyOf(candidates, count);
+	}
+
+	/**
+	 * Keeps the first count candidates that are also in the sorted posting
+	 * list
+	 *
+	 * @return how many were kept
+	 */
+	private static int intersect(int[] candidates, int count, IntList posting) {
+		int kept = 0;
+		int next = 0;
+		for (int i = 0; i < count; i++) {
+			while (next < posting.size() && posting.get(next) < candidates[i])
+				next++;
+			if (next == posting.size())
+				break;
+			if (posting.get(next) == candidates[i])
+				candidates[kept++] = candidates[i];
+		}
+		return kept;
+	}
+
+	private void addEvent(int id, int field, int string) {
+		if (string == StringDictionary.NULL_ID)
+			return;
+		while (myIndexedStrings[field] <= string)
+			addString(field, myIndexedStrings[field]++);
+		myEventsByString.get(field).get(string).add(id);
+	}
+
+	private void addString(int field, int string) {
+		myEventsByString.get(field).add(new IntList());
+		for (long trigram : trigramsOf(myDictionaries[field].getString(string)))
+			myStringsByTrigram[field].getOrAdd(trigram).add(string);
+	}
+
+	/**
+	 * @return the distinct trigrams of the text, each packed into a long
+	 */
+	private static long[] trigramsOf(String text) {
+		if (text.length() < GRAM)
+			return new long[0];
+		long[] trigrams = new long[text.length() - GRAM + 1];
+		for (int i = 0; i < trigrams.length; i++) {
+			trigrams[i] = ((long) text.charAt(i) << 32)
+			        | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+		}
+		Arrays.sort(trigrams);
+		int count = 0;
+		for (int i = 0; i < trigrams.length; i++) {
+			if (count == 0 || trigrams[count - 1] != trigrams[i])
+				trigrams[count++] = trigrams[i];
+		}
+		return Arrays.copyOf(trigrams, count);
+	}
+
+	/**
+	 * Open addressing map from packed trigrams to posting lists, so the
+	 * millions of lookups made while indexing box nothing
+	 */
+	private static class PostingMap {
+		private long[] myKeys = new long[1024];
+		private IntList[] myValues = new IntList[1024];
+		private int mySize;
+		/**
+		 * Takes the top log2(capacity) bits of the key's hash as its slot
+		 */
+		private int myShift = 64 - 10;
+
+		IntList get(long key) {
+			return myValues[find(key)];
+		}
+
+		IntList getOrAdd(long key) {
+			int slot = find(key);
+			IntList value = myValues[slot];
+			if (value == null) {
+				value = new IntList();
+				myKeys[slot] = key;
+				myValues[slot] = value;
+				if (++mySize * 2 > myKeys.length)
+					grow();
+			}
+			return value;
+		}
+
+		private int find(long key) {
+			int mask = myKeys.length - 1;
+			int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> myShift);
+			while (myValues[slot] != null && myKeys[slot] != key)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private void grow() {
+			long[] keys = myKeys;
+			IntList[] values = myValues;
+			myKeys = new long[keys.length * 2];
+			myValues = new IntList[values.length * 2];
+			myShift--;
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] != null) {
+					int slot = find(keys[i]);
+					myKeys[slot] = keys[i];
+					myValues[slot] = values[i];
+				}
+			}
+		}
+	}
+}
@@ -32,7 +32,10 @@ public abstract class AbstractHtmlOutputter {
     
 	/**
 	 * Primary method that directs the construction of html
-	 * element nodes to write the html pages
+	 * element nodes to write the html pages.  The pages are laid out
+	 * over the whole set of events in start time order, so lazy sources
+	 * such as a parser's EventIterator must be collected into a list
+	 * first, after any filtering
 	 * @param events List of events to be output
 	 */
     public String writeEvents(List<Event> events){
@@ -6,7 +6,7 @@ import org.joda.time.*;
 
 import com.hp.gagawa.java.elements.*;
 
-import filtering.ConflictFilter;
+import filtering.ConflictSweep;
 
 /**
  * Provides a view of all events in a list and all other
@@ -35,7 +35,9 @@ public class ConflictOutputter extends AbstractHtmlOutputter{
         row0.appendChild(colTitle1, colTitle2);
         table.appendChild(row0);
         
-        for(Event e: events){
+        ConflictSweep conflicts = new ConflictSweep(events);
+        for(int i=0; i<events.size(); i++){
+            Event e = events.get(i);
             Tr row1 = new Tr();
             row1.setValign("top");
             Td td1 = new Td();
@@ -47,8 +49,7 @@ public class ConflictOutputter extends AbstractHtmlOutputter{
             td1.appendChild(p1);
             appendTitleTimes(e, p1);
             
-            ConflictFilter cf = new ConflictFilter();
-            for(Event e2: cf.filter(events, e)){
+            for(Event e2: conflicts.getConflicts(i)){
             	P p2 = new P();
             	td2.appendChild(p2);
             	appendTitleTimes(e2, p2);
@@ -2,6 +2,7 @@ package output;
 import java.util.*;
 
 import model.Event;
+import model.RecurrenceExpander;
 import org.joda.time.DateTime;
 import com.hp.gagawa.java.*;
 import com.hp.gagawa.java.elements.*;
@@ -22,6 +23,10 @@ public class DayDetailOutputter extends DetailOutputter{
         h4.appendChild(new Text(dt.toString("MMM dd, YYYY")));
         body.appendChild(h4);
         
+        // recurring events only show up as the occurrences on this day
+        DateTime dayStart = dt.withTimeAtStartOfDay();
+        events = RecurrenceExpander.expandToList(events, dayStart,
+                dayStart.plusDays(1).minusMillis(1));
         P p = new P();
         body.appendChild(p);
         createCalendarCells(events, dt, p, filepath);
@@ -1,6 +1,7 @@
 package output;
 
 import model.Event;
+import model.RecurrenceExpander;
 import java.util.*;
 
 import org.joda.time.*;
@@ -55,6 +56,10 @@ public class WeekDetailOutputter extends DayDetailOutputter{
 
 	@Override
 	protected void createCalendarCells(List<Event> events, DateTime dt, Node row2, String filepath) {
+		// recurring events only show up as the occurrences inside this week
+		DateTime weekStart = dt.withTimeAtStartOfDay();
+		events = RecurrenceExpander.expandToList(events, weekStart,
+		        weekStart.plusWeeks(1).minusMillis(1));
 		for(int i=0; i<DateTimeConstants.DAYS_PER_WEEK; i++){
         	Td evs = new Td();
         	P p = new P();
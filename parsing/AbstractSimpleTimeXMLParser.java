@@ -3,15 +3,13 @@ package parsing;
 
 import org.jdom.Element;
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 public abstract class AbstractSimpleTimeXMLParser extends AbstractXMLParser {
 
 	private String myTitle;
 	private String myDescription;
 	private String myLocation;
-	private String myDateTimePattern;
+	private TimestampDecoder myTimestampDecoder;
 	private String myStart;
 	private String myEnd;
 	public AbstractSimpleTimeXMLParser(String rootNode, String eventNode,
@@ -21,7 +19,7 @@ public abstract class AbstractSimpleTimeXMLParser extends AbstractXMLParser {
 		myTitle = title;
 		myDescription = description;
 		myLocation = location;
-		myDateTimePattern = dateTimePattern;
+		myTimestampDecoder = TimestampDecoder.forPattern(dateTimePattern);
 		myStart = start;
 		myEnd = end;
 	}
@@ -75,9 +73,8 @@ public abstract class AbstractSimpleTimeXMLParser extends AbstractXMLParser {
 	 * @return a DateTime
 	 */
 	protected DateTime parseTime(Element time, String attrib) {
-		DateTimeFormatter dtparser = DateTimeFormat.forPattern(myDateTimePattern);
 		String timestamp = getTimestamp(time, attrib);
-		return dtparser.parseDateTime(timestamp);
+		return myTimestampDecoder.decode(timestamp);
 	}
 
 	/**
@@ -3,20 +3,52 @@ package parsing;
 import model.*;
 
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.jdom.*;
-import org.jdom.input.*;
 import org.joda.time.DateTime;
 
 public abstract class AbstractXMLParser {
 
+	/**
+	 * Fewest event elements worth splitting across threads, and the most
+	 * each fork/join task converts on its own
+	 */
+	private static final int PARALLEL_THRESHOLD = 512;
+	private static final int PARALLEL_CHUNK = 128;
+
 	private String myRootNode;
 	private String myEventNode;
+	private boolean myParallel;
+	private PropertySchema mySchema;
 	
 	public AbstractXMLParser(String rootNode, String eventNode){
 		myRootNode = rootNode;
 		myEventNode = eventNode;
+		mySchema = new PropertySchema();
+	}
+
+	/**
+	 * @return the name of the root element of the files this parser reads
+	 */
+	public String getRootNode(){
+		return myRootNode;
+	}
+
+	/**
+	 * Turns parallel conversion of event elements on or off. Off by default;
+	 * only turn it on for parsers whose hooks keep no per-event state.
+	 * 
+	 * @param parallel
+	 *            true to convert large documents on the common fork/join pool
+	 */
+	public void setParallel(boolean parallel){
+		myParallel = parallel;
 	}
 	/**
 	 * 
@@ -25,15 +57,7 @@ public abstract class AbstractXMLParser {
 	 * @throws ParserException
 	 */
 	public List<Event> processEvents(String filename) throws ParserException{
-		Document doc;
-		try {
-			SAXBuilder builder = new SAXBuilder();
-			doc = builder.build(filename);
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RuntimeException(e);
-		}
-		return processEvents(doc);
+		return processEvents(XMLSource.buildDocument(filename));
 	}
 
 	/**
@@ -45,6 +69,15 @@ public abstract class AbstractXMLParser {
 	public List<Event> processEvents(Document doc) throws ParserException{
 		return processEvents(doc.getRootElement());
 	}
+
+	/**
+	 * Same as processEvents(Document), sharing repeated strings through the
+	 * given pool
+	 */
+	public List<Event> processEvents(Document doc, StringPool pool)
+	        throws ParserException {
+		return processEvents(doc.getRootElement(), pool);
+	}
 	
 	/**
 	 * @return a list of the child elements of the root node
@@ -67,32 +100,213 @@ public abstract class AbstractXMLParser {
 	 *         title, description, location, start time, and end time
 	 */
 	public List<Event> processEvents(Element eventsRoot) throws ParserException{
+		return processEvents(eventsRoot, new StringPool());
+	}
+
+	/**
+	 * Same as processEvents(Element), sharing repeated strings through the
+	 * given pool
+	 */
+	public List<Event> processEvents(Element eventsRoot, StringPool pool)
+	        throws ParserException {
 
 		List<Element> xmlEventsList = getEventsNodes(eventsRoot);
 		List<Event> parsedEventsList = new ArrayList<Event>();
 		try {
+			if (myParallel && xmlEventsList.size() >= PARALLEL_THRESHOLD)
+				return parseEventsInParallel(xmlEventsList, pool);
 			for (Element event : xmlEventsList) {
-				String eventTitle = parseTitle(event);
-				String eventDescription = parseDescription(event);
-				String eventLocation = parseLocation(event);
-				DateTime startTime = parseStartTime(event);
-				DateTime endTime = parseEndTime(event);
-				HashMap<String, ArrayList<String>> properties = getExtraProperties(event);
-
-				Event newEvent = new Event(eventTitle, startTime, endTime,
-				        eventDescription, eventLocation, properties);
-				parsedEventsList.add(newEvent);
+				parsedEventsList.add(parseEvent(event, pool));
 			}
 		} catch (NullPointerException e) {
-			String errorMessage = "Wrong parser: " + this.getClass().getName()
-			        + "for file: " + eventsRoot.getDocument().getBaseURI();
-			throw new ParserException(errorMessage,
-			        ParserException.Type.WRONG_TYPE);
+			throw wrongParser(eventsRoot.getDocument().getBaseURI());
+		}
+
+		return parsedEventsList;
+	}
+
+	/**
+	 * Converts the elements on the common fork/join pool. Each task writes
+	 * into its own slots of one array, so the events stay in document order.
+	 */
+	private List<Event> parseEventsInParallel(List<Element> xmlEventsList,
+	        StringPool pool) {
+		Element[] elements = xmlEventsList.toArray(new Element[xmlEventsList
+		        .size()]);
+		Event[] events = new Event[elements.length];
+		ForkJoinPool.commonPool().invoke(
+		        new ParseEventsTask(elements, events, pool, 0, elements.length));
+		return new ArrayList<Event>(Arrays.asList(events));
+	}
+
+	/**
+	 * Converts the elements between two indices, splitting the range in half
+	 * until it is small enough
+	 */
+	@SuppressWarnings("serial")
+	private class ParseEventsTask extends RecursiveAction {
+		private Element[] myElements;
+		private Event[] myEvents;
+		private StringPool myPool;
+		private int myStart;
+		private int myEnd;
+
+		ParseEventsTask(Element[] elements, Event[] events, StringPool pool,
+		        int start, int end) {
+			myElements = elements;
+			myEvents = events;
+			myPool = pool;
+			myStart = start;
+			myEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (myEnd - myStart <= PARALLEL_CHUNK) {
+				for (int i = myStart; i < myEnd; i++)
+					myEvents[i] = parseEvent(myElements[i], myPool);
+				return;
+			}
+			int middle = (myStart + myEnd) >>> 1;
+			invokeAll(new ParseEventsTask(myElements, myEvents, myPool, myStart,
+			        middle), new ParseEventsTask(myElements, myEvents, myPool,
+			        middle, myEnd));
+		}
+	}
+
+	/**
+	 * Parses the file one event element at a time without building the whole
+	 * document, passing each event to the handler as soon as it is read
+	 * 
+	 * @param filename
+	 * @param handler
+	 *            receives the events in document order
+	 * @throws ParserException
+	 */
+	public void streamEvents(String filename, EventHandler handler)
+	        throws ParserException {
+		EventIterator events = iterateEvents(filename);
+		try {
+			while (events.hasNext()) {
+				handler.handleEvent(events.next());
+			}
+		} finally {
+			events.close();
 		}
+	}
+
+	/**
+	 * Parses the file lazily: each call to next reads just far enough into
+	 * the input to produce one more event. Close the iterator when stopping
+	 * early to release the input. Repeated strings are shared among the
+	 * events of one iterator.
+	 * 
+	 * @param filename
+	 * @return the events in document order
+	 * @throws ParserException
+	 *             if the file is not of this parser's format
+	 */
+	public EventIterator iterateEvents(String filename) throws ParserException {
+		return new EventIterator(this, openStream(filename), filename,
+		        new StringPool());
+	}
 
+	/**
+	 * Same as iterateEvents, as a sequential stream. Closing the stream, for
+	 * example with try-with-resources, closes the input.
+	 * 
+	 * @param filename
+	 * @return the events in document order
+	 * @throws ParserException
+	 *             if the file is not of this parser's format
+	 */
+	public Stream<Event> eventStream(String filename) throws ParserException {
+		final EventIterator events = iterateEvents(filename);
+		return StreamSupport.stream(
+		        Spliterators.spliteratorUnknownSize(events,
+		                Spliterator.ORDERED | Spliterator.NONNULL), false)
+		        .onClose(new Runnable() {
+			        public void run() {
+				        events.close();
+			        }
+		        });
+	}
+
+	/**
+	 * Same result as processEvents(String), but the document is streamed so
+	 * only the parsed events are held in memory
+	 * 
+	 * @param filename
+	 * @return List<Event> in document order
+	 * @throws ParserException
+	 */
+	public List<Event> processEventsStreaming(String filename)
+	        throws ParserException {
+		final List<Event> parsedEventsList = new ArrayList<Event>();
+		streamEvents(filename, new EventHandler() {
+			public void handleEvent(Event event) {
+				parsedEventsList.add(event);
+			}
+		});
 		return parsedEventsList;
 	}
 
+	/**
+	 * Opens a streaming reader over the file, positioned inside the root node
+	 */
+	protected StreamingEventReader openStream(String filename)
+	        throws ParserException {
+		try {
+			return new StreamingEventReader(XMLSource.open(filename),
+			        XMLSource.getSystemId(filename), myRootNode, myEventNode);
+		} catch (IOException e) {
+			throw new ParserException("Could not open " + filename + ": "
+			        + e.getMessage(), ParserException.Type.WRONG_TYPE);
+		}
+	}
+
+	/**
+	 * Builds one Event out of an event element using the field hooks
+	 * 
+	 * @param event
+	 *            an event element
+	 * @param pool
+	 *            shares the location and extra properties with the other
+	 *            events of the same load
+	 * @return the parsed Event
+	 */
+	protected Event parseEvent(Element event, StringPool pool) {
+		String eventTitle = parseTitle(event);
+		String eventDescription = parseDescription(event);
+		String eventLocation = pool.intern(parseLocation(event));
+		DateTime startTime = parseStartTime(event);
+		DateTime endTime = parseEndTime(event);
+		HashMap<String, ArrayList<String>> properties = pool
+		        .intern(getExtraProperties(event));
+
+		return newEvent(eventTitle, startTime, endTime, eventDescription,
+		        eventLocation, properties);
+	}
+
+	/**
+	 * Builds an event whose extra properties are laid out in this parser's
+	 * schema, which every event it produces shares
+	 */
+	protected Event newEvent(String title, DateTime startTime,
+	        DateTime endTime, String description, String location,
+	        HashMap<String, ArrayList<String>> properties) {
+		return new Event(title, startTime.getMillis(), endTime.getMillis(),
+		        startTime.getZone(), description, location, mySchema,
+		        properties);
+	}
+
+	ParserException wrongParser(String source) {
+		String errorMessage = "Wrong parser: " + this.getClass().getName()
+		        + "for file: " + source;
+		return new ParserException(errorMessage,
+		        ParserException.Type.WRONG_TYPE);
+	}
+
 	/**
 	 * @param an
 	 *            event element
@@ -8,11 +8,16 @@ import model.Event;
 public class DukeBasketBallXMLParser extends
         AbstractSeparateTimeParser {
 
+	/**
+	 * Root element of the files this parser reads
+	 */
+	public static final String ROOT_NODE = "dataroot";
+
 	public DukeBasketBallXMLParser() {
 		// Assigns names of tags for myEventNode, myTitle, myDescription,
 		// myLocation, myDateTimePattern, myStartDate, myStartTime, myEndDate,
 		// myEndTime
-		super("dataroot", "Calendar", "Subject", "Description", "Location",
+		super(ROOT_NODE, "Calendar", "Subject", "Description", "Location",
 		        "MM/dd/yyyyHH:mm:ss", "StartDate", "StartTime", "EndDate",
 		        "EndTime");
 	}
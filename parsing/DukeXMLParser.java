@@ -11,6 +11,11 @@ import org.joda.time.*;
 public class DukeXMLParser extends
         AbstractConnectedTimeAsChildTextParser {
 
+	/**
+	 * Root element of the files this parser reads
+	 */
+	public static final String ROOT_NODE = "events";
+
 	/**
 	 * Labels for specific nodes in the event tree
 	 */
@@ -23,7 +28,7 @@ public class DukeXMLParser extends
 		// Assigns names of tags for myEventNode, myTitle, myDescription,
 		// myStartTime, myEndTime, myDateTimePattern
 		// but myLocation, myStartTime, myEndTime are overridden
-		super("events", "event", "summary", "description", null,
+		super(ROOT_NODE, "event", "summary", "description", null,
 				"yyyyMMdd'T'HHmmss'Z'", null, null);
 	}
 
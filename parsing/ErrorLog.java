@@ -0,0 +1,149 @@
+package parsing;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends error messages to a log file without making the caller wait on
+ * the disk. Messages go into a fixed size ring buffer that a background
+ * thread drains in batches; when the buffer is full new messages are
+ * dropped and counted instead of blocking. Whatever is still buffered is
+ * written when the JVM shuts down.
+ */
+public class ErrorLog {
+
+	private static final String LOG_FILE = "errorLog.txt";
+	private static final int CAPACITY = 4096;
+	private static final int BATCH_SIZE = 256;
+	private static final long SHUTDOWN_WAIT = 1000;
+	private static final ErrorLog INSTANCE = new ErrorLog(LOG_FILE, CAPACITY);
+
+	private String myFilename;
+	private BlockingQueue<String> myBuffer;
+	private AtomicLong myDropped;
+	private long myReportedDropped;
+	private Thread myWriter;
+
+	/**
+	 * Only getInstance's log exists, so there is one writer thread and one
+	 * shutdown hook
+	 *
+	 * @param filename
+	 *            the file to append to
+	 * @param capacity
+	 *            most messages held in memory before new ones are dropped
+	 */
+	private ErrorLog(String filename, int capacity) {
+		myFilename = filename;
+		myBuffer = new ArrayBlockingQueue<String>(capacity);
+		myDropped = new AtomicLong();
+		myWriter = new Thread(new Runnable() {
+			public void run() {
+				drainForever();
+			}
+		}, "error log writer");
+		myWriter.setDaemon(true);
+		myWriter.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				close();
+			}
+		}, "error log flush"));
+	}
+
+	/**
+	 * @return the log that parsers write to
+	 */
+	public static ErrorLog getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Queues a message for writing; never blocks
+	 *
+	 * @return false if the buffer was full and the message was dropped
+	 */
+	public boolean log(String message) {
+		if (myBuffer.offer(message))
+			return true;
+		myDropped.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * @return how many messages have been dropped because the buffer was full
+	 */
+	public long getDroppedCount() {
+		return myDropped.get();
+	}
+
+	/**
+	 * Writes everything buffered so far before returning
+	 */
+	public void flush() {
+		List<String> batch = new ArrayList<String>();
+		myBuffer.drainTo(batch);
+		write(batch);
+	}
+
+	/**
+	 * Lets the background thread finish its batch, then writes whatever is
+	 * left. Messages logged afterwards stay in memory until the next flush.
+	 */
+	public void close() {
+		myWriter.interrupt();
+		try {
+			myWriter.join(SHUTDOWN_WAIT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	private void drainForever() {
+		List<String> batch = new ArrayList<String>(BATCH_SIZE);
+		while (true) {
+			try {
+				batch.add(myBuffer.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			myBuffer.drainTo(batch, BATCH_SIZE - 1);
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Appends a batch with one open and close of the file, noting any
+	 * messages dropped since the last batch
+	 */
+	private synchronized void write(List<String> batch) {
+		long dropped = myDropped.get();
+		if (batch.isEmpty() && dropped == myReportedDropped)
+			return;
+		try {
+			BufferedWriter out = new BufferedWriter(new FileWriter(myFilename,
+			        true));
+			try {
+				for (String message : batch) {
+					out.write(message);
+					out.write('\n');
+				}
+				if (dropped != myReportedDropped) {
+					out.write("ErrorLog: " + (dropped - myReportedDropped)
+					        + " messages dropped, buffer full\n");
+					myReportedDropped = dropped;
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package parsing;
+
+import model.Event;
+
+/**
+ * Receives events one at a time as a streaming parser produces them
+ */
+public interface EventHandler {
+
+	/**
+	 * @param event
+	 *            the event that was just parsed
+	 */
+	public void handleEvent(Event event);
+}
@@ -0,0 +1,77 @@
+package parsing;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import model.Event;
+
+import org.jdom.Element;
+
+/**
+ * Parses events from a streamed input only as they are asked for. The input
+ * is closed once the last event has been read, or earlier by calling close,
+ * so callers that stop early should always close the iterator.
+ */
+public class EventIterator implements Iterator<Event>, Closeable {
+
+	private AbstractXMLParser myParser;
+	private StreamingEventReader myReader;
+	private String mySource;
+	private StringPool myPool;
+	private Event myNext;
+	private boolean myClosed;
+
+	EventIterator(AbstractXMLParser parser, StreamingEventReader reader,
+	        String source, StringPool pool) {
+		myParser = parser;
+		myReader = reader;
+		mySource = source;
+		myPool = pool;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (myNext != null)
+			return true;
+		if (myClosed)
+			return false;
+		Element element;
+		try {
+			element = myReader.nextEventElement();
+			if (element != null)
+				myNext = myParser.parseEvent(element, myPool);
+		} catch (NullPointerException e) {
+			close();
+			throw myParser.wrongParser(mySource);
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+		if (element == null) {
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public Event next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Event event = myNext;
+		myNext = null;
+		return event;
+	}
+
+	/**
+	 * Stops parsing and releases the input
+	 */
+	@Override
+	public void close() {
+		if (myClosed)
+			return;
+		myClosed = true;
+		myReader.close();
+	}
+}
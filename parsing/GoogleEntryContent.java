@@ -0,0 +1,143 @@
+package parsing;
+
+/**
+ * The pieces of a Google Calendar entry's "content" text, read in a single
+ * pass. The content is a list of lines separated by "<br />": the first
+ * says when the event happens (or that it recurs), and later lines hold the
+ * location and description. Instances never change, so one can be shared
+ * freely between threads.
+ */
+public class GoogleEntryContent {
+
+	private static final String LINE_BREAK = "<br />";
+	private static final String RECUR = "Recurring";
+	private static final String WHERE = "Where:";
+	private static final String DESCRIPTION = "Event Description:";
+	private static final String TIME_SEPARATORS = "\\s+| |,|-|<";
+	private static final int ALL_DAY_TOKENS = 5;
+
+	private String myWhen;
+	private String myWhere;
+	private String myDescription;
+	private boolean myRecurring;
+	private String myRecurrenceStart;
+	private String myRecurrenceDuration;
+	private String[] myStartTokens;
+	private String[] myEndTokens;
+
+	private GoogleEntryContent(String when, String where, String description,
+	        String secondLine, String thirdLine) {
+		myWhen = when;
+		myWhere = where;
+		myDescription = description;
+		myRecurring = when.startsWith(RECUR);
+		if (myRecurring) {
+			myRecurrenceStart = secondLine.substring(14, 33);
+			myRecurrenceDuration = thirdLine;
+		} else {
+			String[] range = when.split("to");
+			myStartTokens = range[0].substring(6).split(TIME_SEPARATORS);
+			if (!isAllDay())
+				myEndTokens = range[1].substring(1).split(TIME_SEPARATORS);
+		}
+	}
+
+	/**
+	 * Splits the content into lines once and picks out every field
+	 *
+	 * @param content
+	 *            text of the entry's content node
+	 * @throws NullPointerException
+	 *             if there is no content
+	 */
+	public static GoogleEntryContent tokenize(String content) {
+		String[] firstLines = new String[3];
+		String where = null;
+		String description = null;
+		int lineNumber = 0;
+		int start = 0;
+		while (start <= content.length()) {
+			int end = content.indexOf(LINE_BREAK, start);
+			if (end < 0)
+				end = content.length();
+			String line = content.substring(start, end);
+			if (lineNumber < firstLines.length)
+				firstLines[lineNumber] = line;
+			if (line.contains(WHERE))
+				where = valueOf(line);
+			if (line.contains(DESCRIPTION))
+				description = valueOf(line);
+			lineNumber++;
+			start = end + LINE_BREAK.length();
+		}
+		return new GoogleEntryContent(firstLines[0], where, description,
+		        firstLines[1], firstLines[2]);
+	}
+
+	private static String valueOf(String line) {
+		return line.substring(line.indexOf(": ") + 1);
+	}
+
+	/**
+	 * @return the "When:" line, or the recurrence line for recurring events
+	 */
+	public String getWhen() {
+		return myWhen;
+	}
+
+	/**
+	 * @return the location, or null if the entry has none
+	 */
+	public String getWhere() {
+		return myWhere;
+	}
+
+	/**
+	 * @return the description, or null if the entry has none
+	 */
+	public String getDescription() {
+		return myDescription;
+	}
+
+	public boolean isRecurring() {
+		return myRecurring;
+	}
+
+	/**
+	 * @return the first start of a recurring event as yyyy-MM-dd HH:mm:ss
+	 */
+	public String getRecurrenceStart() {
+		return myRecurrenceStart;
+	}
+
+	/**
+	 * @return the duration line of a recurring event
+	 */
+	public String getRecurrenceDuration() {
+		return myRecurrenceDuration;
+	}
+
+	/**
+	 * @return true if the event has a date but no times, false for
+	 *         recurring events, whose times are in their recurrence lines
+	 */
+	public boolean isAllDay() {
+		return !myRecurring && myStartTokens.length == ALL_DAY_TOKENS;
+	}
+
+	/**
+	 * @return the words and numbers of the start of the "When:" line, null
+	 *         for recurring events
+	 */
+	public String[] getStartTokens() {
+		return myStartTokens == null ? null : myStartTokens.clone();
+	}
+
+	/**
+	 * @return the words and numbers of the end of the "When:" line, null for
+	 *         all day events
+	 */
+	public String[] getEndTokens() {
+		return myEndTokens == null ? null : myEndTokens.clone();
+	}
+}
@@ -1,19 +1,17 @@
 package parsing;
 
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 public class GoogleRecurringEventXMLParser {
 
+	private static final TimestampDecoder START_DECODER = TimestampDecoder
+	        .forPattern("yyyy-MM-dd HH:mm:ss");
+
 	/**
 	 * @return a DateTime containing the start time information
 	 */
 	public static DateTime parseEventStart(String timeInfo) {
-		DateTimeFormatter formatter = DateTimeFormat
-		        .forPattern("yyyy-MM-dd HH:mm:ss");
-		return formatter.parseDateTime(timeInfo);	
-		
+		return START_DECODER.decode(timeInfo);
 	}
 	
 	/**
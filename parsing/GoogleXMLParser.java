@@ -1,14 +1,17 @@
 package parsing;
 
 import model.Event;
+import model.RecurrenceExpander;
+import model.RecurrenceRule;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import org.jdom.Element;
+import org.jdom.Namespace;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 /**
  * This class takes a google calendar in xml format and parses the different
@@ -16,10 +19,16 @@ import org.joda.time.format.DateTimeFormatter;
  */
 public class GoogleXMLParser extends AbstractXMLParser {
 
-	private static final String split_one = "\\s+| |,|-|<";
+	/**
+	 * Root element of the files this parser reads
+	 */
+	public static final String ROOT_NODE = "feed";
+
 	private static final String myTitle = "title";
 	private static final String myContent = "content";
-	private static final String RECUR = "Recurring";
+	private static final String myRecurrence = "recurrence";
+	private static final Namespace GD = Namespace.getNamespace("gd",
+	        "http://schemas.google.com/g/2005");
 	private static final int YEAR = 4;
 	private static final int DAY = 2;
 	private static final int TIME = 5;
@@ -28,11 +37,21 @@ public class GoogleXMLParser extends AbstractXMLParser {
 
 	private static DateTimeZone TIMEZONE = DateTimeZone.forID("UTC");
 
-	private String[] startTimeArray;
-	private String[] endTimeArray;
-
 	public GoogleXMLParser(){
-		super("feed", "entry");
+		super(ROOT_NODE, "entry");
+	}
+
+	/**
+	 * Reads the content of the entry once and takes every field but the
+	 * title from that
+	 */
+	@Override
+	protected Event parseEvent(Element event, StringPool pool) {
+		GoogleEntryContent content = parseContent(event);
+		return newEvent(parseTitle(event), parseStartTime(content),
+		        parseEndTime(content), content.getDescription(),
+		        pool.intern(content.getWhere()),
+		        pool.intern(getExtraProperties(event)));
 	}
 
 	@Override
@@ -46,51 +65,50 @@ public class GoogleXMLParser extends AbstractXMLParser {
 
 	@Override
 	protected String parseDescription(Element event) {
-		return parseContent(event, "Event Description:");
+		return parseContent(event).getDescription();
 	}
 
 	@Override
 	protected String parseLocation(Element event) {
-		return parseContent(event, "Where:");
+		return parseContent(event).getWhere();
 	}
 
 	/**
-	 * @param event
-	 *            : the event being parsed finder: the information you are
-	 *            looking for (ie. "Where" for location)
-	 * @return the information of the "content" node pertaining to the String finder
-	 *         (location, descriptions, etc)
+	 * Keeps the repeat rule of a recurring entry, if the feed has one, so the
+	 * series can be expanded into occurrences later instead of being stored
+	 * as a single event
 	 */
-	private String parseContent(Element event, String finder) {
-		String[] summary = event.getChildText(myContent, null).toString()
-		        .split("<br />");
-		if (summary != null) {
-			String information = null;
-			for (String line : summary) {
-				if (line.contains(finder))
-					information = line.substring(line.indexOf(": ") + 1);
-			}
-			return information;
-		} else
-			throw new NullPointerException("Couldn't find node: " + myContent);
-	}
-
-	/**
-	 * @return an array of the different elements of the "content" node, split
-	 *         on whitespace
-	 */
-	protected String[] parseTimeSplitUp(Element element) {
-		String timeInfo = element.getChildText(myContent, null).toString();
-		return timeInfo.split("<br />");
+	@Override
+	protected HashMap<String, ArrayList<String>> getExtraProperties(
+	        Element event) {
+		String recurrence = event.getChildText(myRecurrence, GD);
+		if (recurrence == null)
+			return null;
+		RecurrenceRule rule;
+		try {
+			rule = RecurrenceRule.parse(recurrence);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (rule == null)
+			return null;
+		HashMap<String, ArrayList<String>> map = new HashMap<String, ArrayList<String>>();
+		ArrayList<String> values = new ArrayList<String>();
+		values.add(rule.toString());
+		map.put(RecurrenceExpander.RECURRENCE, values);
+		return map;
 	}
 
 	/**
-	 * Given an event, determines whether the event is recurring or not
+	 * @param event
+	 *            : the event being parsed
+	 * @return the fields of the "content" node (time, location, description)
 	 */
-	private Boolean isRecurring(Element time) {
-		if (parseTimeSplitUp(time)[0].startsWith(RECUR))
-			return true;
-		return false;
+	private GoogleEntryContent parseContent(Element event) {
+		String content = event.getChildText(myContent, null);
+		if (content == null)
+			throw new NullPointerException("Couldn't find node: " + myContent);
+		return GoogleEntryContent.tokenize(content);
 	}
 
 	/**
@@ -116,12 +134,14 @@ public class GoogleXMLParser extends AbstractXMLParser {
 	/**
 	 * Returns a DateTime object with the appropriate year, month, day, hour
 	 * minute, timezone information, given an array with the time information
+	 * and the array of the start time, which supplies the date when the time
+	 * array has none
 	 */
-	protected DateTime parseTime(String[] time) {
+	protected DateTime parseTime(String[] start, String[] time) {
 
-		int year = parseYear(startTimeArray);
-		int month = parseMonth(startTimeArray);
-		int day = parseDay(startTimeArray);
+		int year = parseYear(start);
+		int month = parseMonth(start);
+		int day = parseDay(start);
 
 		if (isMultipleDayEvent(time)) {
 			year = parseYear(time);
@@ -143,30 +163,35 @@ public class GoogleXMLParser extends AbstractXMLParser {
 
 	@Override
 	protected DateTime parseStartTime(Element time) {
-		if (isRecurring(time)) {
-			return GoogleRecurringEventXMLParser
-			        .parseEventStart(parseTimeSplitUp(time)[1]
-			                .substring(14, 33));
-		}
-		startTimeArray = parseTimeSplitUp(time)[0].split("to")[0].substring(6)
-		        .split(split_one);
-		return parseTime(startTimeArray);
+		return parseStartTime(parseContent(time));
 	}
 
 	@Override
 	protected DateTime parseEndTime(Element time) {
-		if (isRecurring(time)) {
+		return parseEndTime(parseContent(time));
+	}
+
+	private DateTime parseStartTime(GoogleEntryContent content) {
+		if (content.isRecurring()) {
+			return GoogleRecurringEventXMLParser.parseEventStart(content
+			        .getRecurrenceStart());
+		}
+		String[] start = content.getStartTokens();
+		return parseTime(start, start);
+	}
+
+	private DateTime parseEndTime(GoogleEntryContent content) {
+		if (content.isRecurring()) {
 			return GoogleRecurringEventXMLParser.parseEventEnd(
-			        parseTimeSplitUp(time)[1].substring(14, 33),
-			        parseTimeSplitUp(time)[2]);
+			        content.getRecurrenceStart(),
+			        content.getRecurrenceDuration());
 		}
 
-		if (isAllDayEvent(startTimeArray)) {
-			return parseTime(startTimeArray);
+		String[] start = content.getStartTokens();
+		if (content.isAllDay()) {
+			return parseTime(start, start);
 		}
-		endTimeArray = parseTimeSplitUp(time)[0].split("to")[1].substring(1)
-		        .split(split_one);
-		return parseTime(endTimeArray);
+		return parseTime(start, content.getEndTokens());
 	}
 
 	/**
@@ -180,9 +205,7 @@ public class GoogleXMLParser extends AbstractXMLParser {
 	 * Returns the month, given an array of either start or end time information
 	 */
 	protected int parseMonth(String[] time) {
-		DateTimeFormatter format = DateTimeFormat.forPattern("MMM");
-		DateTime tempMonth = format.parseDateTime(time[1]);
-		return tempMonth.getMonthOfYear();
+		return TimestampDecoder.decodeMonthName(time[1]);
 	}
 
 	/**
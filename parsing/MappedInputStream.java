@@ -0,0 +1,101 @@
+package parsing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a local file through memory mapped windows of its channel, so the
+ * bytes are copied straight out of the page cache instead of through a
+ * stream buffer. Java 8 cannot unmap a window on demand; each window is
+ * released once the stream has moved past it or been closed and the
+ * garbage collector reclaims it, so only large files are worth mapping.
+ */
+public class MappedInputStream extends InputStream {
+
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+	private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+	private FileChannel myChannel;
+	private long mySize;
+	private long myWindowStart;
+	private ByteBuffer myWindow;
+
+	/**
+	 * @param file
+	 *            the file to read
+	 * @throws IOException
+	 */
+	public MappedInputStream(File file) throws IOException {
+		myChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		mySize = myChannel.size();
+		myWindowStart = 0;
+		myWindow = map(0);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fillWindow())
+			return -1;
+		return myWindow.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0)
+			return 0;
+		if (!fillWindow())
+			return -1;
+		int count = Math.min(length, myWindow.remaining());
+		myWindow.get(bytes, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		long position = Math.min(mySize, getPosition() + Math.max(0, count));
+		long skipped = position - getPosition();
+		myWindow = CLOSED;
+		myWindowStart = position;
+		myWindow = map(position);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, mySize - getPosition());
+	}
+
+	@Override
+	public void close() throws IOException {
+		myWindow = CLOSED;
+		myChannel.close();
+	}
+
+	private long getPosition() {
+		return myWindowStart + myWindow.position();
+	}
+
+	/**
+	 * Maps the next window once the current one has been read
+	 *
+	 * @return false at the end of the file
+	 */
+	private boolean fillWindow() throws IOException {
+		if (myWindow.hasRemaining())
+			return true;
+		long next = myWindowStart + myWindow.capacity();
+		if (next >= mySize)
+			return false;
+		myWindow = CLOSED;
+		myWindowStart = next;
+		myWindow = map(next);
+		return true;
+	}
+
+	private ByteBuffer map(long start) throws IOException {
+		return myChannel.map(FileChannel.MapMode.READ_ONLY, start,
+		        Math.min(WINDOW_SIZE, mySize - start));
+	}
+}
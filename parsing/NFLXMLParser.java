@@ -5,10 +5,15 @@ import model.Event;
 
 public class NFLXMLParser extends AbstractConnectedTimeAsChildTextParser {
 
+	/**
+	 * Root element of the files this parser reads
+	 */
+	public static final String ROOT_NODE = "document";
+
 	public NFLXMLParser() {
 
 		// Assigns names of tags for EVENT_NODE, TITLE, DESCRIPTION, LOCATION
-		super("document", "row", "Col1", "Col3", "Col15",
+		super(ROOT_NODE, "row", "Col1", "Col3", "Col15",
 		        "yyyy-MM-dd HH:mm:ss", "Col8", "Col9");
 	}
 
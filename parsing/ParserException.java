@@ -1,7 +1,5 @@
 package parsing;
 
-import java.io.*;
-
 public class ParserException extends RuntimeException {
 
 	public static enum Type {WRONG_TYPE, NONEXISTENT_FIELD, INVALID_FIELD};
@@ -26,16 +24,11 @@ public class ParserException extends RuntimeException {
 	}
 
 	/**
-	 * Creates logfile and records error messages in it
+	 * Records the error message in the log file; the write happens in the
+	 * background so throwing stays cheap
 	 */
 	public void makeLogEntry(String logMessage) {
-		try {
-			BufferedWriter out = new BufferedWriter(new FileWriter("errorLog.txt"));
-			out.write(logMessage+'\n');
-			out.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		ErrorLog.getInstance().log(logMessage);
 	}
 }
 
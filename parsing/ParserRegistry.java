@@ -0,0 +1,182 @@
+package parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+/**
+ * Picks the parser for a file by looking at its root element instead of
+ * trying every parser in turn. Each parser is filed under its ROOT_NODE
+ * constant, the same one it passes to its constructor, and is only created
+ * the first time a file with that root element needs it.
+ */
+public class ParserRegistry {
+
+	private Map<String, List<Class<? extends AbstractXMLParser>>> myParserClasses;
+	private Map<Class<? extends AbstractXMLParser>, AbstractXMLParser> myParsers;
+	private boolean myParallel;
+
+	/**
+	 * Creates a registry that knows about all of the built in parsers
+	 */
+	public ParserRegistry() {
+		myParserClasses = new LinkedHashMap<String, List<Class<? extends AbstractXMLParser>>>();
+		myParsers = new HashMap<Class<? extends AbstractXMLParser>, AbstractXMLParser>();
+		register(DukeBasketBallXMLParser.ROOT_NODE, DukeBasketBallXMLParser.class);
+		register(DukeXMLParser.ROOT_NODE, DukeXMLParser.class);
+		register(GoogleXMLParser.ROOT_NODE, GoogleXMLParser.class);
+		register(NFLXMLParser.ROOT_NODE, NFLXMLParser.class);
+		register(TVXMLParser.ROOT_NODE, TVXMLParser.class);
+	}
+
+	/**
+	 * Associates a parser with the root element of the files it reads. When
+	 * several parsers share a root element they are all candidates for such
+	 * files, in the order they were registered.
+	 *
+	 * @param rootNode
+	 *            the root element the parser's getRootNode returns
+	 * @param parserClass
+	 *            parser to create the first time such a file is read, needs
+	 *            a no argument constructor
+	 */
+	public synchronized void register(String rootNode,
+	        Class<? extends AbstractXMLParser> parserClass) {
+		List<Class<? extends AbstractXMLParser>> classes = myParserClasses
+		        .get(rootNode);
+		if (classes == null) {
+			classes = new ArrayList<Class<? extends AbstractXMLParser>>();
+			myParserClasses.put(rootNode, classes);
+		}
+		classes.add(parserClass);
+	}
+
+	/**
+	 * Turns parallel conversion on or off for every parser this registry
+	 * has created or will create
+	 * 
+	 * @see AbstractXMLParser#setParallel(boolean)
+	 */
+	public synchronized void setParallel(boolean parallel) {
+		myParallel = parallel;
+		for (AbstractXMLParser parser : myParsers.values())
+			parser.setParallel(parallel);
+	}
+
+	/**
+	 * @param filename
+	 *            a local path or a URL
+	 * @return the parser registered for the root element of the file
+	 * @throws ParserException
+	 *             if no parser handles that root element
+	 */
+	public AbstractXMLParser getParser(String filename) throws ParserException {
+		return getParserForRoot(sniffRootNode(filename));
+	}
+
+	/**
+	 * @return the first parser registered for the given root element
+	 * @throws ParserException
+	 *             if no parser handles that root element
+	 */
+	public synchronized AbstractXMLParser getParserForRoot(String rootNode)
+	        throws ParserException {
+		List<Class<? extends AbstractXMLParser>> classes = myParserClasses
+		        .get(rootNode);
+		if (classes == null)
+			throw new ParserException("No parser for root node: " + rootNode,
+			        ParserException.Type.WRONG_TYPE);
+		return getInstance(classes.get(0));
+	}
+
+	/**
+	 * Lists the parsers that may be able to read the file. If the root
+	 * element of the file is not registered, every known parser is a
+	 * candidate.
+	 *
+	 * @param filename
+	 *            a local path or a URL
+	 * @return the candidate parsers, most likely first
+	 */
+	public List<AbstractXMLParser> getCandidates(String filename)
+	        throws ParserException {
+		return getCandidatesForRoot(sniffRootNode(filename));
+	}
+
+	/**
+	 * @return the parsers registered for the root element, or every known
+	 *         parser if there are none
+	 */
+	public synchronized List<AbstractXMLParser> getCandidatesForRoot(
+	        String rootNode) {
+		List<AbstractXMLParser> candidates = new ArrayList<AbstractXMLParser>();
+		List<Class<? extends AbstractXMLParser>> classes = myParserClasses
+		        .get(rootNode);
+		if (classes != null) {
+			for (Class<? extends AbstractXMLParser> parserClass : classes)
+				candidates.add(getInstance(parserClass));
+			return candidates;
+		}
+		for (List<Class<? extends AbstractXMLParser>> all : myParserClasses
+		        .values()) {
+			for (Class<? extends AbstractXMLParser> parserClass : all)
+				candidates.add(getInstance(parserClass));
+		}
+		return candidates;
+	}
+
+	private AbstractXMLParser getInstance(
+	        Class<? extends AbstractXMLParser> parserClass) {
+		AbstractXMLParser parser = myParsers.get(parserClass);
+		if (parser != null)
+			return parser;
+		try {
+			parser = parserClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create parser "
+			        + parserClass.getName(), e);
+		}
+		parser.setParallel(myParallel);
+		myParsers.put(parserClass, parser);
+		return parser;
+	}
+
+	/**
+	 * Reads the file only as far as its first start element
+	 *
+	 * @return the local name of the root element
+	 * @throws ParserException
+	 *             if the file cannot be read or is not XML
+	 */
+	public String sniffRootNode(String filename) throws ParserException {
+		InputStream in = null;
+		XMLStreamReader reader = null;
+		try {
+			in = XMLSource.open(filename);
+			reader = StreamingEventReader.FACTORY.createXMLStreamReader(
+			        XMLSource.getSystemId(filename), in);
+			return StreamingEventReader.moveToRoot(reader);
+		} catch (Exception e) {
+			throw new ParserException("Could not read root node of "
+			        + filename + ": " + e.getMessage(),
+			        ParserException.Type.WRONG_TYPE);
+		} finally {
+			close(reader, in);
+		}
+	}
+
+	private void close(XMLStreamReader reader, InputStream in) {
+		try {
+			if (reader != null)
+				reader.close();
+			if (in != null)
+				in.close();
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package parsing;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.jdom.Element;
+import org.jdom.Namespace;
+
+/**
+ * Walks an XML input with StAX and hands back one event element at a time.
+ * Only the subtree of the current event is ever built, so memory use does
+ * not depend on the size of the input.
+ */
+public class StreamingEventReader implements Closeable {
+
+	static final XMLInputFactory FACTORY = createFactory();
+
+	private InputStream myInput;
+	private XMLStreamReader myReader;
+	private String myEventNode;
+
+	/**
+	 * Opens the input and checks its root element
+	 *
+	 * @param input
+	 *            the raw XML, closed together with this reader
+	 * @param systemId
+	 *            location of the input, used in error messages
+	 * @param rootNode
+	 *            expected name of the root element
+	 * @param eventNode
+	 *            name of the children of the root that hold events
+	 * @throws ParserException
+	 *             if the root element is not rootNode
+	 */
+	public StreamingEventReader(InputStream input, String systemId,
+	        String rootNode, String eventNode) throws ParserException {
+		myInput = input;
+		myEventNode = eventNode;
+		try {
+			myReader = FACTORY.createXMLStreamReader(systemId, input);
+			moveToRoot(myReader);
+		} catch (XMLStreamException e) {
+			close();
+			throw new ParserException("Could not read " + systemId + ": "
+			        + e.getMessage(), ParserException.Type.WRONG_TYPE);
+		}
+		if (!myReader.getLocalName().equals(rootNode)) {
+			String errorMessage = "Expected root node: " + rootNode
+			        + " but found: " + myReader.getLocalName();
+			close();
+			throw new ParserException(errorMessage,
+			        ParserException.Type.WRONG_TYPE);
+		}
+	}
+
+	/**
+	 * Advances to the next event child of the root
+	 *
+	 * @return the event as a detached element, or null once the root is closed
+	 */
+	public Element nextEventElement() throws ParserException {
+		try {
+			while (myReader.hasNext()) {
+				int type = myReader.next();
+				if (type == XMLStreamConstants.START_ELEMENT) {
+					if (myReader.getLocalName().equals(myEventNode))
+						return readElement();
+					skipElement();
+				} else if (type == XMLStreamConstants.END_ELEMENT) {
+					return null;
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw new ParserException(e.getMessage(),
+			        ParserException.Type.INVALID_FIELD);
+		}
+	}
+
+	/**
+	 * Builds the element the reader is positioned on, leaving the reader on
+	 * its end tag
+	 */
+	private Element readElement() throws XMLStreamException {
+		Element element = new Element(myReader.getLocalName(), getNamespace(
+		        myReader.getPrefix(), myReader.getNamespaceURI()));
+		for (int i = 0; i < myReader.getAttributeCount(); i++) {
+			String uri = myReader.getAttributeNamespace(i);
+			if (uri == null || uri.length() == 0)
+				element.setAttribute(myReader.getAttributeLocalName(i),
+				        myReader.getAttributeValue(i));
+			else
+				element.setAttribute(myReader.getAttributeLocalName(i),
+				        myReader.getAttributeValue(i),
+				        getNamespace(myReader.getAttributePrefix(i), uri));
+		}
+		while (true) {
+			int type = myReader.next();
+			if (type == XMLStreamConstants.START_ELEMENT)
+				element.addContent(readElement());
+			else if (type == XMLStreamConstants.CHARACTERS
+			        || type == XMLStreamConstants.CDATA
+			        || type == XMLStreamConstants.SPACE)
+				element.addContent(myReader.getText());
+			else if (type == XMLStreamConstants.END_ELEMENT)
+				return element;
+		}
+	}
+
+	/**
+	 * Skips over a child of the root that is not an event
+	 */
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int type = myReader.next();
+			if (type == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (type == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * Skips the prolog (declarations, doctype, comments) and stops on the
+	 * root element
+	 *
+	 * @return the local name of the root element
+	 */
+	static String moveToRoot(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+			if (!reader.hasNext())
+				throw new XMLStreamException("No root element");
+		}
+		return reader.getLocalName();
+	}
+
+	private Namespace getNamespace(String prefix, String uri) {
+		if (uri == null || uri.length() == 0)
+			return Namespace.NO_NAMESPACE;
+		return Namespace.getNamespace(prefix == null ? "" : prefix, uri);
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (myReader != null)
+				myReader.close();
+		} catch (XMLStreamException e) {
+			// the underlying stream is closed below regardless
+		}
+		try {
+			myInput.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		return factory;
+	}
+}
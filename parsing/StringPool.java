@@ -0,0 +1,104 @@
+package parsing;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares one copy of each distinct string among the events of a load.
+ * Fields such as channel ids, credit roles and ratings repeat across nearly
+ * every event of a guide, and each copy read out of the document would
+ * otherwise stay on the heap for as long as its event does. A pool is meant
+ * to live for a single load and may be used from several threads at once.
+ */
+public class StringPool {
+
+	private static final int STRING_OVERHEAD = 40;
+
+	private ConcurrentHashMap<String, String> myStrings;
+	private LongAdder myLookups;
+	private LongAdder myDuplicates;
+	private LongAdder mySavedBytes;
+
+	public StringPool() {
+		myStrings = new ConcurrentHashMap<String, String>();
+		myLookups = new LongAdder();
+		myDuplicates = new LongAdder();
+		mySavedBytes = new LongAdder();
+	}
+
+	/**
+	 * @return the pooled copy of the value, which is the value itself the
+	 *         first time it is seen, or null for null
+	 */
+	public String intern(String value) {
+		if (value == null)
+			return null;
+		myLookups.increment();
+		String pooled = myStrings.putIfAbsent(value, value);
+		if (pooled == null)
+			return value;
+		if (pooled != value) {
+			myDuplicates.increment();
+			mySavedBytes.add(STRING_OVERHEAD + 2L * value.length());
+		}
+		return pooled;
+	}
+
+	/**
+	 * Pools the names and values of an event's extra properties. The value
+	 * lists are updated in place.
+	 *
+	 * @return a map with the pooled names, or null for null
+	 */
+	public HashMap<String, ArrayList<String>> intern(
+	        HashMap<String, ArrayList<String>> properties) {
+		if (properties == null)
+			return null;
+		HashMap<String, ArrayList<String>> pooled = new HashMap<String, ArrayList<String>>(
+		        properties.size() * 2);
+		for (Map.Entry<String, ArrayList<String>> entry : properties.entrySet()) {
+			ArrayList<String> values = entry.getValue();
+			if (values != null) {
+				for (int i = 0; i < values.size(); i++)
+					values.set(i, intern(values.get(i)));
+			}
+			pooled.put(intern(entry.getKey()), values);
+		}
+		return pooled;
+	}
+
+	/**
+	 * @return how many strings were looked up
+	 */
+	public long getLookups() {
+		return myLookups.sum();
+	}
+
+	/**
+	 * @return how many distinct strings are kept
+	 */
+	public int getUniqueCount() {
+		return myStrings.size();
+	}
+
+	/**
+	 * @return how many looked up strings were copies of a pooled one
+	 */
+	public long getDuplicates() {
+		return myDuplicates.sum();
+	}
+
+	/**
+	 * @return estimated heap no longer retained thanks to the duplicates
+	 */
+	public long getSavedBytes() {
+		return mySavedBytes.sum();
+	}
+
+	public String toString() {
+		return "StringPool: " + getLookups() + " strings, "
+		        + getUniqueCount() + " distinct, " + getDuplicates()
+		        + " duplicates, ~" + getSavedBytes() / 1024 + " KB saved";
+	}
+}
@@ -12,6 +12,11 @@ import org.jdom.Element;
 public class TVXMLParser extends
         AbstractConnectedTimeAsAttributeValueParser {
 
+	/**
+	 * Root element of the files this parser reads
+	 */
+	public static final String ROOT_NODE = "tv";
+
 	/**
 	 * Labels for specific nodes in the event tree
 	 */
@@ -23,7 +28,7 @@ public class TVXMLParser extends
 		// Assigns names of tags for myEventNode, myTitle, myDescription,
 		// myLocation, myDateTimePatter, myStart, myEnd
 		// myLocation is overridden
-		super("tv", "programme", "title", "desc", null, "yyyyMMddHHmmss Z",
+		super(ROOT_NODE, "programme", "title", "desc", null, "yyyyMMddHHmmss Z",
 		        "start", "stop");
 	}
 
@@ -70,28 +75,29 @@ public class TVXMLParser extends
 	}
 
 	/**
-	 * Parses rating information and adds to parameter map
+	 * Parses rating information and adds to parameter map, only if the
+	 * programme has a rating value
 	 * 
 	 * @param event
 	 * @param map
 	 */
 	protected void addRatingToMap(Element event,
 	        HashMap<String, ArrayList<String>> map) {
+		Element rating = event.getChild(myRating);
+		if (rating == null)
+			return;
+		String ratingValue = rating.getChildText("value");
+		if (ratingValue == null)
+			return;
 		if (!map.containsKey(myRating))
 			map.put(myRating, new ArrayList<String>());
-		String ratingValue;
-		try {
-			ratingValue = event.getChild(myRating).getChildText("value");
-			map.get(myRating).add(ratingValue);
-		} catch (NullPointerException e) {
-			return;
-		}
+		map.get(myRating).add(ratingValue);
 	}
 
 	public static void main(String[] args) {
 		TVXMLParser parser = new TVXMLParser();
 		List<Event> listOfEvents = parser
-		        .processEvents("http://dl.dropbox.com/u/5156866/tv.xml");
+		        .processEventsStreaming("http://dl.dropbox.com/u/5156866/tv.xml");
 		System.err.println("done loading!");
 
 		for (Event event : listOfEvents) {
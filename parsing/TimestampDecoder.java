@@ -0,0 +1,315 @@
+package parsing;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.IllegalInstantException;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Turns timestamps written in a fixed pattern into instants. Each pattern is
+ * compiled once; patterns made only of numeric year, month, day, hour,
+ * minute and second fields, literals and a numeric offset are then decoded
+ * straight from the characters without creating any objects. Anything else
+ * falls back to a Joda formatter built once for the pattern.
+ *
+ * Results match DateTimeFormat.forPattern(pattern).parseDateTime(text).
+ */
+public abstract class TimestampDecoder {
+
+	private static final ConcurrentHashMap<String, TimestampDecoder> DECODERS = new ConcurrentHashMap<String, TimestampDecoder>();
+	private static final String[][] MONTH_NAMES = createMonthNames();
+
+	/**
+	 * @param pattern
+	 *            a Joda DateTimeFormat pattern
+	 * @return the decoder for that pattern, shared by everyone who asks for it
+	 */
+	public static TimestampDecoder forPattern(String pattern) {
+		TimestampDecoder decoder = DECODERS.get(pattern);
+		if (decoder == null) {
+			decoder = compile(pattern);
+			TimestampDecoder existing = DECODERS.putIfAbsent(pattern, decoder);
+			if (existing != null)
+				decoder = existing;
+		}
+		return decoder;
+	}
+
+	/**
+	 * @return the instant the text describes, in milliseconds since the epoch
+	 * @throws IllegalArgumentException
+	 *             if the text does not match the pattern
+	 */
+	public abstract long decodeMillis(CharSequence text);
+
+	/**
+	 * @return the instant the text describes, in the default time zone
+	 * @throws IllegalArgumentException
+	 *             if the text does not match the pattern
+	 */
+	public DateTime decode(CharSequence text) {
+		return new DateTime(decodeMillis(text));
+	}
+
+	/**
+	 * Reads a month name, short or long, in the default locale
+	 *
+	 * @return the month of the year, 1 to 12
+	 * @throws IllegalArgumentException
+	 *             if the text is not a month name
+	 */
+	public static int decodeMonthName(CharSequence text) {
+		String value = text.toString();
+		for (int month = 0; month < MONTH_NAMES.length; month++) {
+			for (String name : MONTH_NAMES[month]) {
+				if (name.length() == value.length()
+				        && name.regionMatches(true, 0, value, 0, name.length()))
+					return month + 1;
+			}
+		}
+		throw new IllegalArgumentException("Invalid month: \"" + text + '"');
+	}
+
+	private static TimestampDecoder compile(String pattern) {
+		LayoutDecoder layout = LayoutDecoder.compile(pattern);
+		if (layout != null)
+			return layout;
+		return new FormatterDecoder(DateTimeFormat.forPattern(pattern));
+	}
+
+	private static String[][] createMonthNames() {
+		String[][] names = new String[12][];
+		DateTime month = new DateTime(2000, 1, 1, 0, 0, 0, 0);
+		Locale locale = Locale.getDefault();
+		for (int i = 0; i < names.length; i++) {
+			names[i] = new String[] {
+			        month.monthOfYear().getAsShortText(locale),
+			        month.monthOfYear().getAsText(locale) };
+			month = month.plusMonths(1);
+		}
+		return names;
+	}
+
+	/**
+	 * Decoder for patterns Joda has to handle itself
+	 */
+	private static class FormatterDecoder extends TimestampDecoder {
+		private DateTimeFormatter myFormatter;
+
+		FormatterDecoder(DateTimeFormatter formatter) {
+			myFormatter = formatter;
+		}
+
+		@Override
+		public long decodeMillis(CharSequence text) {
+			return myFormatter.parseMillis(text.toString());
+		}
+	}
+
+	/**
+	 * Decoder for fixed layouts of numeric fields and literals
+	 */
+	private static class LayoutDecoder extends TimestampDecoder {
+		private static final int YEAR = 0;
+		private static final int MONTH = 1;
+		private static final int DAY = 2;
+		private static final int HOUR = 3;
+		private static final int MINUTE = 4;
+		private static final int SECOND = 5;
+		private static final int LITERAL = 6;
+		private static final int OFFSET = 7;
+		private static final String FIELD_LETTERS = "yMdHms";
+
+		private int[] myKinds;
+		// most digits read for a field, or the character of a literal
+		private int[] myArgs;
+
+		private LayoutDecoder(int[] kinds, int[] args) {
+			myKinds = kinds;
+			myArgs = args;
+		}
+
+		/**
+		 * @return the decoder, or null if the pattern has anything but the
+		 *         supported fields
+		 */
+		static LayoutDecoder compile(String pattern) {
+			int[] kinds = new int[pattern.length()];
+			int[] args = new int[pattern.length()];
+			int size = 0;
+			int i = 0;
+			while (i < pattern.length()) {
+				char c = pattern.charAt(i);
+				if (c == '\'') {
+					int close = pattern.indexOf('\'', i + 1);
+					if (close < 0)
+						return null;
+					if (close == i + 1) {
+						kinds[size] = LITERAL;
+						args[size++] = '\'';
+					}
+					for (int j = i + 1; j < close; j++) {
+						kinds[size] = LITERAL;
+						args[size++] = pattern.charAt(j);
+					}
+					i = close + 1;
+					continue;
+				}
+				int count = 1;
+				while (i + count < pattern.length()
+				        && pattern.charAt(i + count) == c)
+					count++;
+				int field = FIELD_LETTERS.indexOf(c);
+				if (field >= 0) {
+					if (field == YEAR ? count != 4 : count > 2)
+						return null;
+					kinds[size] = field;
+					args[size++] = 2;
+				} else if (c == 'Z') {
+					if (count > 2)
+						return null;
+					kinds[size] = OFFSET;
+					args[size++] = 0;
+				} else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+					return null;
+				} else {
+					for (int j = 0; j < count; j++) {
+						kinds[size] = LITERAL;
+						args[size++] = c;
+					}
+				}
+				i += count;
+			}
+			// like Joda, a year followed directly by another number is read
+			// as exactly four digits, otherwise it takes up to nine
+			for (int k = 0; k < size; k++) {
+				if (kinds[k] == YEAR)
+					args[k] = (k + 1 < size && kinds[k + 1] <= SECOND) ? 4 : 9;
+			}
+			int[] compiledKinds = new int[size];
+			int[] compiledArgs = new int[size];
+			System.arraycopy(kinds, 0, compiledKinds, 0, size);
+			System.arraycopy(args, 0, compiledArgs, 0, size);
+			return new LayoutDecoder(compiledKinds, compiledArgs);
+		}
+
+		@Override
+		public long decodeMillis(CharSequence text) {
+			int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0;
+			int offset = 0;
+			boolean hasOffset = false;
+			int pos = 0;
+			int length = text.length();
+			for (int k = 0; k < myKinds.length; k++) {
+				int kind = myKinds[k];
+				if (kind == LITERAL) {
+					if (pos >= length
+					        || !sameLiteral(text.charAt(pos), (char) myArgs[k]))
+						throw malformed(text, pos);
+					pos++;
+					continue;
+				}
+				if (kind == OFFSET) {
+					// "Z", "+hh", "+hhmm" or "+hh:mm"
+					hasOffset = true;
+					if (pos < length && sameLiteral(text.charAt(pos), 'Z')) {
+						pos++;
+						continue;
+					}
+					if (pos >= length
+					        || (text.charAt(pos) != '+' && text.charAt(pos) != '-'))
+						throw malformed(text, pos);
+					int sign = text.charAt(pos) == '-' ? -1 : 1;
+					int hours = twoDigits(text, pos + 1);
+					if (hours < 0 || hours > 23)
+						throw malformed(text, pos);
+					pos += 3;
+					int minutes = 0;
+					int next = pos < length && text.charAt(pos) == ':' ? pos + 1
+					        : pos;
+					if (twoDigits(text, next) >= 0) {
+						minutes = twoDigits(text, next);
+						if (minutes > 59)
+							throw malformed(text, next);
+						pos = next + 2;
+					}
+					offset = sign * (hours * 60 + minutes) * 60000;
+					continue;
+				}
+				int value = 0;
+				int end = Math.min(length, pos + myArgs[k]);
+				int start = pos;
+				while (pos < end && isDigit(text.charAt(pos)))
+					value = value * 10 + (text.charAt(pos++) - '0');
+				if (pos == start)
+					throw malformed(text, pos);
+				switch (kind) {
+				case YEAR:
+					year = value;
+					break;
+				case MONTH:
+					month = value;
+					break;
+				case DAY:
+					day = value;
+					break;
+				case HOUR:
+					hour = value;
+					break;
+				case MINUTE:
+					minute = value;
+					break;
+				default:
+					second = value;
+				}
+			}
+			if (pos != length)
+				throw malformed(text, pos);
+			long local = ISOChronology.getInstanceUTC().getDateTimeMillis(
+			        year, month, day, hour, minute, second, 0);
+			if (hasOffset)
+				return local - offset;
+			DateTimeZone zone = DateTimeZone.getDefault();
+			int zoneOffset = zone.getOffsetFromLocal(local);
+			long millis = local - zoneOffset;
+			if (zoneOffset != zone.getOffset(millis))
+				throw new IllegalInstantException("Illegal instant due to "
+				        + "time zone offset transition: \"" + text + '"');
+			return millis;
+		}
+
+		/**
+		 * @return the value of the two digits at pos, or -1 if there are not
+		 *         two digits there
+		 */
+		private static int twoDigits(CharSequence text, int pos) {
+			if (pos + 2 > text.length() || !isDigit(text.charAt(pos))
+			        || !isDigit(text.charAt(pos + 1)))
+				return -1;
+			return (text.charAt(pos) - '0') * 10 + text.charAt(pos + 1) - '0';
+		}
+
+		private static boolean sameLiteral(char actual, char expected) {
+			return actual == expected
+			        || Character.toUpperCase(actual) == Character
+			                .toUpperCase(expected);
+		}
+
+		private static boolean isDigit(char c) {
+			return c >= '0' && c <= '9';
+		}
+
+		private static IllegalArgumentException malformed(CharSequence text,
+		        int pos) {
+			return new IllegalArgumentException("Invalid format: \"" + text
+			        + "\" is malformed at \""
+			        + text.subSequence(Math.min(pos, text.length()),
+			                text.length()) + '"');
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package parsing;
+
+import java.io.*;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.jdom.Document;
+import org.jdom.input.SAXBuilder;
+
+/**
+ * Opens the raw input behind a filename or URL so that the parsers can read
+ * it as a stream instead of handing the location to SAXBuilder. Inputs
+ * ending in .gz or .zip are decompressed as they are read, and large plain
+ * local files are memory mapped.
+ */
+public class XMLSource {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Smallest plain file worth memory mapping; smaller ones read as fast
+	 * through a buffer without holding a mapping until the next collection
+	 */
+	private static final long MAPPED_THRESHOLD = 32L * 1024 * 1024;
+
+	/**
+	 * @param filename
+	 *            a local path or a URL
+	 * @return a stream over the (decompressed) contents of the input
+	 * @throws IOException
+	 */
+	public static InputStream open(String filename) throws IOException {
+		String name = filename.toLowerCase();
+		boolean gzip = name.endsWith(".gz");
+		boolean zip = name.endsWith(".zip");
+		InputStream in;
+		if (isURL(filename))
+			in = new BufferedInputStream(new URL(filename).openStream(),
+			        BUFFER_SIZE);
+		else if (gzip || zip || new File(filename).length() < MAPPED_THRESHOLD)
+			in = new BufferedInputStream(new FileInputStream(filename),
+			        BUFFER_SIZE);
+		else
+			return new MappedInputStream(new File(filename));
+		if (gzip)
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		if (zip)
+			return openFirstEntry(new ZipInputStream(in), filename);
+		return in;
+	}
+
+	/**
+	 * Positions a zip stream at the start of its first file
+	 */
+	private static InputStream openFirstEntry(ZipInputStream zip,
+	        String filename) throws IOException {
+		ZipEntry entry;
+		while ((entry = zip.getNextEntry()) != null) {
+			if (!entry.isDirectory())
+				return new BufferedInputStream(zip, BUFFER_SIZE);
+		}
+		zip.close();
+		throw new IOException("No files in " + filename);
+	}
+
+	/**
+	 * Reads and parses the whole input into a document. The document can be
+	 * handed to several parsers, none of which modify it.
+	 * 
+	 * @param filename
+	 *            a local path or a URL
+	 * @return the parsed document
+	 * @throws ParserException
+	 *             if the input cannot be read or is not well formed
+	 */
+	public static Document buildDocument(String filename)
+	        throws ParserException {
+		InputStream in = null;
+		try {
+			in = open(filename);
+			return new SAXBuilder().build(in, getSystemId(filename));
+		} catch (Exception e) {
+			throw new ParserException("Could not build document from "
+			        + filename + ": " + e.getMessage(),
+			        ParserException.Type.WRONG_TYPE);
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * @return the system id to report for the input, so relative references
+	 *         and error messages resolve the same way SAXBuilder would
+	 */
+	public static String getSystemId(String filename) {
+		if (isURL(filename))
+			return filename;
+		return new File(filename).toURI().toString();
+	}
+
+	private static void close(InputStream in) {
+		try {
+			if (in != null)
+				in.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static boolean isURL(String filename) {
+		return filename.indexOf("://") > 0;
+	}
+}
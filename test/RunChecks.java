@@ -0,0 +1,35 @@
+import filtering.ConflictSweepCheck;
+import filtering.EventBitmapCheck;
+import filtering.FilterPipelineCheck;
+import filtering.ParallelFilterCheck;
+import filtering.StoreFilterCheck;
+import model.PropertyIndexCheck;
+import model.QueryCacheCheck;
+import model.RecurrenceExpanderCheck;
+import model.StartTimeIndexCheck;
+import model.TrigramIndexCheck;
+
+/**
+ * Runs every check under test/ and prints what each one compared. The
+ * first difference stops the run with an AssertionError. Compile test/
+ * together with the sources, but leave it out of the shipped classes.
+ */
+public class RunChecks {
+
+	public static void main(String[] args) {
+		report("StoreFilterCheck", StoreFilterCheck.run());
+		report("ConflictSweepCheck", ConflictSweepCheck.run());
+		report("StartTimeIndexCheck", StartTimeIndexCheck.run());
+		report("TrigramIndexCheck", TrigramIndexCheck.run());
+		report("PropertyIndexCheck", PropertyIndexCheck.run());
+		report("FilterPipelineCheck", FilterPipelineCheck.run());
+		report("ParallelFilterCheck", ParallelFilterCheck.run());
+		report("EventBitmapCheck", EventBitmapCheck.run());
+		report("QueryCacheCheck", QueryCacheCheck.run());
+		report("RecurrenceExpanderCheck", RecurrenceExpanderCheck.run());
+	}
+
+	private static void report(String name, String summary) {
+		System.out.println(name + ": " + summary);
+	}
+}
@@ -0,0 +1,50 @@
+package filtering;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import model.Event;
+import model.EventStore;
+import model.RandomEvents;
+
+/**
+ * Checks that the sweep finds, for every event, exactly the conflicts that
+ * running ConflictFilter over the whole list with that event finds, in the
+ * same order, whether the sweep is built from a list or from a store.
+ */
+public class ConflictSweepCheck {
+
+	public static String run() {
+		int checked = 0;
+		int conflicts = 0;
+		for (long seed = 1; seed <= 3; seed++) {
+			// denser guides have more overlapping and identical spans
+			List<Event> events = RandomEvents.generate(seed, 500 * (int) seed);
+			EventStore store = new EventStore();
+			store.addAll(events);
+			ConflictSweep fromList = new ConflictSweep(events);
+			ConflictSweep fromStore = new ConflictSweep(store);
+			ConflictFilter filter = new ConflictFilter();
+			int pairs = 0;
+			for (int i = 0; i < events.size(); i++) {
+				List<Event> expected = filter.filter(events, events.get(i));
+				check(fromList.getConflicts(i).equals(expected),
+				        "conflicts of " + i + " from the list");
+				check(fromStore.getConflicts(i).equals(expected),
+				        "conflicts of " + i + " from the store");
+				int[] indices = fromList.getConflictIndices(i);
+				check(indices.length == expected.size(), "indices of " + i);
+				for (int j = 0; j < indices.length; j++)
+					check(events.get(indices[j]) == expected.get(j),
+					        "index " + j + " of " + i);
+				pairs += expected.size();
+			}
+			check(fromList.getConflictCount() == pairs
+			        && fromStore.getConflictCount() == pairs, "conflict count");
+			checked += events.size();
+			conflicts += pairs;
+		}
+		return checked + " events, " + conflicts + " conflicts agree";
+	}
+}
@@ -0,0 +1,127 @@
+package filtering;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import model.Event;
+import model.EventStore;
+import model.RandomEvents;
+
+/**
+ * Checks the bitmap operations against java.util.BitSet on sparse, dense
+ * and mixed sets spanning several containers, and the filters' bitmaps
+ * against their id lists.
+ */
+public class EventBitmapCheck {
+
+	private static final int ROUNDS = 200;
+
+	public static String run() {
+		Random random = new Random(24);
+		for (int round = 0; round < ROUNDS; round++) {
+			int size = 1 + random.nextInt(400000);
+			BitSet a = randomSet(random, size, random.nextDouble() * 0.3);
+			BitSet b = randomSet(random, size, random.nextDouble());
+			EventBitmap first = EventBitmap.of(toIds(a));
+			EventBitmap second = EventBitmap.of(toIds(b));
+
+			BitSet expected = (BitSet) a.clone();
+			expected.and(b);
+			same(first.and(second), expected, "and");
+			same(second.and(first), expected, "and the other way");
+			expected = (BitSet) a.clone();
+			expected.or(b);
+			same(first.or(second), expected, "or");
+			same(second.or(first), expected, "or the other way");
+			expected = (BitSet) a.clone();
+			expected.andNot(b);
+			same(first.andNot(second), expected, "andNot");
+			expected = (BitSet) b.clone();
+			expected.andNot(a);
+			same(second.andNot(first), expected, "andNot the other way");
+
+			int from = random.nextInt(size);
+			int to = from + random.nextInt(size);
+			expected = new BitSet();
+			expected.set(from, to);
+			same(EventBitmap.range(from, to), expected, "range " + from + " to "
+			        + to);
+			for (int i = 0; i < 50; i++) {
+				int id = random.nextInt(size + 10);
+				check(first.contains(id) == a.get(id), "contains " + id);
+			}
+		}
+		same(EventBitmap.empty(), new BitSet(), "empty");
+		same(EventBitmap.range(5, 5), new BitSet(), "empty range");
+		check(EventBitmap.empty().or(EventBitmap.empty()).isEmpty(), "empty or");
+		compareFilters(random);
+		return ROUNDS + " pairs of sets agree";
+	}
+
+	/**
+	 * Filters' bitmaps must hold their matching ids, and their inverted
+	 * bitmaps the events invertedFilter keeps
+	 */
+	private static void compareFilters(Random random) {
+		List<Event> events = RandomEvents.generate(12, 5000);
+		EventStore store = new EventStore();
+		store.addAll(events);
+		for (int round = 0; round < 50; round++) {
+			AbstractFilter filter;
+			Object argument;
+			if (round % 2 == 0) {
+				filter = new KeywordFilter();
+				argument = RandomEvents.keyword(random);
+			} else {
+				filter = new TVActorFilter();
+				argument = RandomEvents.actor(random.nextInt(RandomEvents.ACTORS));
+			}
+			EventBitmap matching = filter.matchingBitmap(store, argument);
+			check(Arrays.equals(matching.toArray(), filter.matchingIds(store,
+			        argument)), "bitmap of " + argument);
+			check(matching.materialize(store).getEvents().equals(
+			        filter.filter(events, argument)), "materialized " + argument);
+			check(filter.invertedBitmap(store, argument).materialize(store)
+			        .getEvents().equals(filter.invertedFilter(events, argument)),
+			        "inverted bitmap of " + argument);
+		}
+	}
+
+	/**
+	 * @return ids up to size, either all equally likely, alternating dense
+	 *         and sparse containers, or dense and sparse runs that cross
+	 *         container edges
+	 */
+	private static BitSet randomSet(Random random, int size, double density) {
+		BitSet set = new BitSet();
+		int kind = random.nextInt(3);
+		for (int id = 0; id < size; id++) {
+			double chance;
+			if (kind == 0)
+				chance = density;
+			else if (kind == 1)
+				chance = (id >>> 16) % 2 == 0 ? 0.9 : 0.001;
+			else
+				chance = id % 70000 < 30000 ? density : density / 100;
+			if (random.nextDouble() < chance)
+				set.set(id);
+		}
+		return set;
+	}
+
+	private static int[] toIds(BitSet set) {
+		int[] ids = new int[set.cardinality()];
+		int count = 0;
+		for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1))
+			ids[count++] = id;
+		return ids;
+	}
+
+	private static void same(EventBitmap bitmap, BitSet expected, String what) {
+		check(Arrays.equals(bitmap.toArray(), toIds(expected)), what);
+		check(bitmap.cardinality() == expected.cardinality(), what
+		        + " cardinality");
+		check(bitmap.isEmpty() == expected.isEmpty(), what + " isEmpty");
+	}
+}
@@ -0,0 +1,154 @@
+package filtering;
+
+import static model.Checks.check;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+import model.Event;
+import model.EventStore;
+import model.RandomEvents;
+
+import org.joda.time.DateTime;
+
+/**
+ * Checks the fused pipeline against applying the list filters one after
+ * another: any combination of filters, added in any order, with or without
+ * index candidates, must pass the same events in the same order. Also
+ * checks that stages run cheapest and most selective first and that a
+ * stage answered by its candidates is not checked again.
+ */
+public class FilterPipelineCheck {
+
+	private static final int ROUNDS = 300;
+
+	public static String run() {
+		Random random = new Random(22);
+		List<Event> events = new ArrayList<Event>(RandomEvents.generate(3, 3000));
+		events.addAll(RandomEvents.generate(4, 1000));
+		EventStore store = new EventStore();
+		store.addAll(events);
+
+		for (int round = 0; round < ROUNDS; round++) {
+			List<AbstractFilter> filters = new ArrayList<AbstractFilter>();
+			List<Object[]> arguments = new ArrayList<Object[]>();
+			pickFilters(random, filters, arguments);
+			List<Event> expected = events;
+			for (int i = 0; i < filters.size(); i++)
+				expected = filters.get(i).filter(expected, arguments.get(i));
+
+			FilterPipeline pipeline = new FilterPipeline();
+			for (int i = 0; i < filters.size(); i++) {
+				AbstractFilter filter = filters.get(i);
+				Object[] filterArgs = arguments.get(i);
+				pipeline.add(filter.getClass().getSimpleName(), filter
+				        .asIdPredicate(store, filterArgs), random.nextBoolean()
+				        ? null : source(filter, store, filterArgs, random));
+			}
+			int[] ids = pipeline.run(store.size());
+			check(store.select(ids, ids.length).getEvents().equals(expected),
+			        pipeline + " differs from the list filters");
+		}
+		checkOrdering(store.size());
+		return ROUNDS + " combinations agree";
+	}
+
+	/**
+	 * Picks one to four filters in a random order
+	 */
+	private static void pickFilters(Random random,
+	        List<AbstractFilter> filters, List<Object[]> arguments) {
+		List<Integer> kinds = new ArrayList<Integer>(Arrays.asList(0, 1, 2, 3));
+		Collections.shuffle(kinds, random);
+		for (int kind : kinds.subList(0, 1 + random.nextInt(4))) {
+			switch (kind) {
+			case 0:
+				filters.add(new KeywordFilter());
+				arguments.add(new Object[] { RandomEvents.keyword(random) });
+				break;
+			case 1:
+				filters.add(new LocationFilter());
+				arguments.add(new Object[] { RandomEvents.LOCATIONS[random
+				        .nextInt(RandomEvents.LOCATIONS.length)].substring(random
+				        .nextInt(3)) });
+				break;
+			case 2:
+				DateTime from = RandomEvents.START.plusMinutes(15 * random
+				        .nextInt(RandomEvents.DAYS * 24 * 4));
+				filters.add(new TimeFilter());
+				arguments.add(new Object[] { from,
+				        from.plusDays(1 + random.nextInt(10)) });
+				break;
+			default:
+				filters.add(new TVActorFilter());
+				arguments.add(new Object[] { RandomEvents.actor(random
+				        .nextInt(RandomEvents.ACTORS)) });
+			}
+		}
+	}
+
+	/**
+	 * @return candidates listed by a scan, as an index would list them,
+	 *         with a known or unknown estimate
+	 */
+	private static FilterPipeline.CandidateSource source(
+	        final AbstractFilter filter, final EventStore store,
+	        final Object[] args, Random random) {
+		final boolean known = random.nextBoolean();
+		return new FilterPipeline.CandidateSource() {
+			public int estimate() {
+				return known ? filter.matchingIds(store, args).length : -1;
+			}
+
+			public int[] candidates() {
+				return filter.matchingIds(store, args);
+			}
+		};
+	}
+
+	/**
+	 * A stage letting everything through is added first, yet must be
+	 * checked after the selective one, so it only sees the few events that
+	 * one lets through; a stage answered by its candidates is never checked
+	 */
+	private static void checkOrdering(final int size) {
+		final int[] calls = new int[3];
+		FilterPipeline pipeline = new FilterPipeline();
+		pipeline.add("all", new IntPredicate() {
+			public boolean test(int id) {
+				calls[0]++;
+				return true;
+			}
+		}, null);
+		pipeline.add("few", new IntPredicate() {
+			public boolean test(int id) {
+				calls[1]++;
+				return id % 100 == 0;
+			}
+		}, null);
+		pipeline.add("indexed", new IntPredicate() {
+			public boolean test(int id) {
+				calls[2]++;
+				return id % 2 == 0;
+			}
+		}, new FilterPipeline.CandidateSource() {
+			public int estimate() {
+				return -1;
+			}
+
+			public int[] candidates() {
+				int[] even = new int[(size + 1) / 2];
+				for (int i = 0; i < even.length; i++)
+					even[i] = 2 * i;
+				return even;
+			}
+		});
+		int[] ids = pipeline.run(size);
+		check(ids.length == (size + 99) / 100, "ordering result");
+		check(calls[2] == 0, "the indexed stage was checked " + calls[2]
+		        + " times");
+		// the sample timing every stage, then only what "few" passes
+		check(calls[0] <= 256 + ids.length, "the stage passing everything ran "
+		        + calls[0] + " times, so it was not put last");
+	}
+}
@@ -0,0 +1,98 @@
+package filtering;
+
+import static model.Checks.check;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import model.Event;
+import model.EventStore;
+import model.RandomEvents;
+
+import org.joda.time.DateTime;
+
+/**
+ * Checks that filters in parallel mode pass the same events, in the same
+ * order, as in the default mode: from a list, from a collection without
+ * random access, inverted, and from a store. The parallel path is only
+ * taken when the common pool has more than one thread, so on a single core
+ * set -Djava.util.concurrent.ForkJoinPool.common.parallelism=4; the
+ * summary says whether it was taken.
+ */
+public class ParallelFilterCheck {
+
+	public static String run() {
+		Random random = new Random(23);
+		List<Event> events = RandomEvents.generate(11, 20000);
+		Collection<Event> linked = new LinkedList<Event>(events);
+		EventStore store = new EventStore();
+		store.addAll(events);
+
+		int compared = 0;
+		for (int round = 0; round < 10; round++) {
+			DateTime from = RandomEvents.START.plusDays(random
+			        .nextInt(RandomEvents.DAYS));
+			compare(new KeywordFilter(), new KeywordFilter(), events, linked,
+			        store, RandomEvents.keyword(random));
+			compare(new LocationFilter(), new LocationFilter(), events, linked,
+			        store, RandomEvents.LOCATIONS[random
+			                .nextInt(RandomEvents.LOCATIONS.length)]);
+			compare(new TVActorFilter(), new TVActorFilter(), events, linked,
+			        store, RandomEvents.actor(random.nextInt(RandomEvents.ACTORS)));
+			compare(new TimeFilter(), new TimeFilter(), events, linked, store,
+			        from, from.plusDays(random.nextInt(5)));
+			compare(new ConflictFilter(), new ConflictFilter(), events, linked,
+			        store, events.get(random.nextInt(events.size())));
+			compared += 5;
+		}
+
+		boolean parallel = ForkJoinPool.getCommonPoolParallelism() > 1;
+		check(checkedOnPool(events) == parallel, parallel
+		        ? "large inputs were not split across the pool"
+		        : "split across a pool of one thread");
+		check(!checkedOnPool(events.subList(0, 100)),
+		        "a small input was split across the pool");
+		return compared + " filters agree, parallel path "
+		        + (parallel ? "exercised" : "not exercised (one pool thread)");
+	}
+
+	private static void compare(AbstractFilter sequential,
+	        AbstractFilter parallel, List<Event> events,
+	        Collection<Event> linked, EventStore store, Object... args) {
+		parallel.setParallel(true);
+		String name = sequential.getClass().getSimpleName() + " "
+		        + Arrays.toString(args);
+		List<Event> expected = sequential.filter(events, args);
+		check(parallel.filter(events, args).equals(expected), name
+		        + " from a list");
+		check(parallel.filter(linked, args).equals(expected), name
+		        + " from a linked list");
+		List<Event> inverted = sequential.invertedFilter(events, args);
+		check(parallel.invertedFilter(events, args).equals(inverted), name
+		        + " inverted");
+		check(parallel.invertedFilter(linked, args).equals(inverted), name
+		        + " inverted from a linked list");
+		check(Arrays.equals(parallel.matchingIds(store, args), sequential
+		        .matchingIds(store, args)), name + " from a store");
+		check(parallel.filter(store, args).getEvents().equals(expected), name
+		        + " as a store");
+	}
+
+	/**
+	 * @return true if any event was checked by a fork/join pool thread
+	 */
+	private static boolean checkedOnPool(List<Event> events) {
+		final boolean[] onPool = new boolean[1];
+		AbstractFilter filter = new AbstractFilter() {
+			public boolean checkFilterCondition(Event event, Object... args) {
+				if (Thread.currentThread() instanceof ForkJoinWorkerThread)
+					onPool[0] = true;
+				return true;
+			}
+		};
+		filter.setParallel(true);
+		check(filter.filter(events).size() == events.size(), "pass-all filter");
+		return onPool[0];
+	}
+}
@@ -0,0 +1,135 @@
+package filtering;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import model.Event;
+import model.EventStore;
+import model.RandomEvents;
+import model.StringDictionary;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Checks the column store against the list of events it was built from,
+ * and every filter run over the store against the same filter run over
+ * the list: the same events must pass, in the same order.
+ */
+public class StoreFilterCheck {
+
+	private static final int ROUNDS = 40;
+
+	public static String run() {
+		Random random = new Random(17);
+		List<Event> events = new ArrayList<Event>(RandomEvents.generate(1, 2000));
+		// a second source with its own schema
+		events.addAll(RandomEvents.generate(2, 1000));
+		EventStore store = new EventStore();
+		store.addAll(events);
+
+		checkColumns(store, events);
+		checkDerivedStores(store, events, random);
+		for (int round = 0; round < ROUNDS; round++) {
+			compare(new KeywordFilter(), store, events,
+			        RandomEvents.keyword(random));
+			compare(new LocationFilter(), store, events,
+			        RandomEvents.LOCATIONS[random.nextInt(RandomEvents.LOCATIONS.length)]
+			                .substring(random.nextInt(4)));
+			DateTime from = RandomEvents.START.plusMinutes(15 * random
+			        .nextInt(RandomEvents.DAYS * 24 * 4));
+			compare(new TimeFilter(), store, events, from,
+			        from.plusMinutes(15 * random.nextInt(24 * 4 * 3)));
+			compare(new TVActorFilter(), store, events,
+			        RandomEvents.actor(random.nextInt(RandomEvents.ACTORS + 2)));
+			compare(new ConflictFilter(), store, events,
+			        events.get(random.nextInt(events.size())));
+		}
+
+		long version = store.getVersion();
+		EventStore copy = store.copy();
+		store.clear();
+		check(store.isEmpty() && store.getVersion() != version,
+		        "clear must empty the store and change its version");
+		check(copy.size() == events.size() && copy.getEvents().equals(events),
+		        "clear must leave copies untouched");
+		return ROUNDS * 5 + " filters agree on " + events.size()
+		        + " events";
+	}
+
+	private static void checkColumns(EventStore store, List<Event> events) {
+		check(store.size() == events.size(), "size");
+		for (int id = 0; id < events.size(); id++) {
+			Event event = events.get(id);
+			check(store.getEvent(id) == event, "event " + id);
+			check(store.getStart(id) == event.getStartMillis()
+			        && store.getEnd(id) == event.getEndMillis(), "times of "
+			        + id);
+			check(store.getTitleDictionary().getString(store.getTitleId(id))
+			        .equals(event.getTitle()), "title of " + id);
+			check(store.getLocationDictionary()
+			        .getString(store.getLocationId(id))
+			        .equals(event.getLocation()), "location of " + id);
+			check(store.getDescriptionDictionary()
+			        .getString(store.getDescriptionId(id))
+			        .equals(event.getDescription()), "description of " + id);
+		}
+	}
+
+	private static void checkDerivedStores(EventStore store,
+	        List<Event> events, Random random) {
+		int[] ids = new int[100];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = random.nextInt(events.size());
+		EventStore selection = store.select(ids, ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			check(selection.getEvent(i) == events.get(ids[i]), "select " + i);
+			check(selection.getTitleId(i) == store.getTitleId(ids[i]),
+			        "selection must share the dictionaries");
+		}
+		EventStore derived = store.derive();
+		derived.addFrom(store, ids[0]);
+		check(derived.getTitleDictionary() == store.getTitleDictionary()
+		        && derived.getEvent(0) == events.get(ids[0]), "derive");
+		check(store.copy().getEvents().equals(events), "copy");
+
+		long version = store.getVersion();
+		EventStore grown = store.copy();
+		grown.add(events.get(0));
+		check(store.getVersion() == version, "a copy must not share versions");
+
+		// a new string makes the derived store copy the dictionaries
+		int titles = store.getTitleDictionary().size();
+		derived.add(events.get(ids[1]));
+		check(derived.getTitleDictionary() == store.getTitleDictionary(),
+		        "known strings must not copy the dictionaries");
+		derived.add(new Event("Never seen", 0, 0, DateTimeZone.UTC, "", "",
+		        (Map<String, List<String>>) null));
+		check(derived.getTitleDictionary() != store.getTitleDictionary()
+		        && store.getTitleDictionary().size() == titles
+		        && store.getTitleDictionary().idOf("Never seen") == StringDictionary.NOT_FOUND,
+		        "a derived store wrote into its parent's dictionary");
+		check(derived.getTitleId(1) == store.getTitleId(ids[1])
+		        && derived.getEvent(2).getTitle().equals("Never seen"),
+		        "copied dictionaries must keep their ids");
+		derived.addFrom(store, ids[2]);
+		check(derived.getEvent(3) == events.get(ids[2]),
+		        "addFrom after the copy");
+	}
+
+	private static void compare(AbstractFilter filter, EventStore store,
+	        List<Event> events, Object... args) {
+		List<Event> expected = filter.filter(events, args);
+		int[] ids = filter.matchingIds(store, args);
+		List<Event> byIds = new ArrayList<Event>();
+		for (int id : ids)
+			byIds.add(store.getEvent(id));
+		check(byIds.equals(expected), filter.getClass().getSimpleName()
+		        + " ids differ for " + Arrays.toString(args));
+		check(filter.filter(store, args).getEvents().equals(expected), filter
+		        .getClass().getSimpleName()
+		        + " store differs for "
+		        + Arrays.toString(args));
+	}
+}
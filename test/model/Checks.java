@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * The assertion shared by the checks under test/, which compare the store,
+ * its indices and the fused filters with the list filters they stand in
+ * for. The tree has no test framework, so each check is a class whose run
+ * method throws on the first difference and otherwise sums up what it
+ * compared; RunChecks runs them all.
+ */
+public class Checks {
+
+	/**
+	 * @throws AssertionError
+	 *             with the message if the condition does not hold
+	 */
+	public static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,67 @@
+package model;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import filtering.TVActorFilter;
+
+/**
+ * Checks the property index against TVActorFilter scanning the store and
+ * against the events' own values: every actor and rating must list the
+ * same events, once each even when an event names an actor twice, while
+ * events from sources with different schemas are added and after the
+ * store is cleared.
+ */
+public class PropertyIndexCheck {
+
+	public static String run() {
+		EventStore store = new EventStore();
+		PropertyIndex index = new PropertyIndex(store);
+		int compared = 0;
+		for (int batch = 0; batch < 3; batch++) {
+			// each batch is a source with its own schema
+			store.addAll(RandomEvents.generate(batch, 900));
+			compared += compareValues(store, index);
+		}
+		check(index.getPropertyNames().containsAll(
+		        Arrays.asList(TVActorFilter.ACTOR, "rating")), "names");
+		store.clear();
+		check(index.countWith(TVActorFilter.ACTOR, RandomEvents.actor(0)) == 0,
+		        "the index must start over when the store is cleared");
+		store.addAll(RandomEvents.generate(5, 400));
+		compared += compareValues(store, index);
+		return compared + " values agree";
+	}
+
+	private static int compareValues(EventStore store, PropertyIndex index) {
+		TVActorFilter filter = new TVActorFilter();
+		int compared = 0;
+		// one past the last actor never occurs
+		for (int actor = 0; actor <= RandomEvents.ACTORS; actor++) {
+			String name = RandomEvents.actor(actor);
+			int[] ids = index.idsWith(TVActorFilter.ACTOR, name);
+			check(Arrays.equals(ids, filter.matchingIds(store, name)),
+			        "actor " + name);
+			check(index.countWith(TVActorFilter.ACTOR, name) == ids.length,
+			        "count of " + name);
+			compared++;
+		}
+		for (String rating : new String[] { "PG", "R", "NC-17" }) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int id = 0; id < store.size(); id++) {
+				List<String> values = store.getEvent(id).getProperty("rating");
+				if (values != null && values.contains(rating))
+					expected.add(id);
+			}
+			int[] ids = index.idsWith("rating", rating);
+			check(ids.length == expected.size(), "rating " + rating);
+			for (int i = 0; i < ids.length; i++)
+				check(ids[i] == expected.get(i), "rating " + rating);
+			compared++;
+		}
+		check(index.idsWith("no such property", "x").length == 0,
+		        "unknown property");
+		return compared;
+	}
+}
@@ -0,0 +1,73 @@
+package model;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+/**
+ * Checks the query cache: the order filters were applied in must not
+ * matter, an answer must be dropped once the store it came from changes,
+ * the least recently used query must be evicted first, and a cached answer
+ * must not change when the store it was selected from does.
+ */
+public class QueryCacheCheck {
+
+	public static String run() {
+		EventStore store = new EventStore();
+		store.addAll(RandomEvents.generate(25, 200));
+		long version = store.getVersion();
+		EventStore answer = store.select(new int[] { 1, 3, 5 }, 3);
+		List<String> query = Arrays.asList("keyword=news", "actor=Actor 1");
+		List<String> reordered = Arrays.asList("actor=Actor 1", "keyword=news");
+
+		QueryCache cache = new QueryCache(3);
+		check(cache.get(query, version) == null, "empty cache");
+		cache.put(query, version, answer);
+		check(cache.get(reordered, version) == answer,
+		        "the order of the filters must not matter");
+		check(cache.get(Arrays.asList("keyword=news"), version) == null,
+		        "a different query");
+		counts(cache, 1, 2, 0);
+
+		// a cached answer is a copy, so adding events leaves it alone
+		List<Event> before = new ArrayList<Event>(answer.getEvents());
+		store.add(RandomEvents.generate(26, 1).get(0));
+		check(store.getVersion() != version, "adding must change the version");
+		check(answer.getEvents().equals(before), "the answer changed");
+		check(cache.get(query, store.getVersion()) == null,
+		        "an answer from an older store was kept");
+		check(cache.get(query, version) == null,
+		        "a stale answer must be dropped once seen");
+		counts(cache, 1, 4, 0);
+		version = store.getVersion();
+		store.clear();
+		check(store.getVersion() != version, "clearing must change the version");
+
+		// least recently used goes first
+		version = store.getVersion();
+		List<List<String>> queries = new ArrayList<List<String>>();
+		for (int i = 0; i < 4; i++)
+			queries.add(Collections.singletonList("location=" + i));
+		for (int i = 0; i < 3; i++)
+			cache.put(queries.get(i), version, answer);
+		check(cache.get(queries.get(0), version) == answer, "first query");
+		cache.put(queries.get(3), version, answer);
+		counts(cache, 2, 4, 1);
+		check(cache.get(queries.get(1), version) == null,
+		        "the least recently used query was kept");
+		for (int i : new int[] { 0, 2, 3 })
+			check(cache.get(queries.get(i), version) == answer, "query " + i
+			        + " was evicted");
+
+		cache.clear();
+		for (List<String> each : queries)
+			check(cache.get(each, version) == null, "kept after clear");
+		return cache.toString();
+	}
+
+	private static void counts(QueryCache cache, long hits, long misses,
+	        long evictions) {
+		check(cache.getHits() == hits && cache.getMisses() == misses
+		        && cache.getEvictions() == evictions, cache.toString());
+	}
+}
@@ -0,0 +1,99 @@
+package model;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Makes reproducible random guides for the runnable checks that compare
+ * the store, its indices and the fused filters with the list based
+ * filters. Titles, descriptions and locations are drawn from a small
+ * vocabulary so that keywords repeat; starts fall on quarter hours so that
+ * times and spans collide; a few events end before they start; and
+ * programmes list zero to four actors, sometimes the same one twice.
+ */
+public class RandomEvents {
+
+	/**
+	 * Words the text fields are made of, for picking keywords that occur
+	 */
+	public static final String[] WORDS = { "news", "game", "duke", "carolina",
+	        "weather", "movie", "late", "show", "basketball", "review",
+	        "cooking", "ab" };
+	public static final String[] LOCATIONS = { "Cameron Indoor Stadium",
+	        "Room 101", "Studio B", "Wallace Wade", "Online" };
+	public static final int ACTORS = 40;
+	/**
+	 * Every start falls within DAYS days from START
+	 */
+	public static final DateTime START = new DateTime(2012, 3, 1, 0, 0,
+	        DateTimeZone.UTC);
+	public static final int DAYS = 30;
+
+	private static final long QUARTER_HOUR = 15 * 60 * 1000L;
+
+	/**
+	 * @return count events sharing one new schema, the same ones for the
+	 *         same seed
+	 */
+	public static List<Event> generate(long seed, int count) {
+		Random random = new Random(seed);
+		PropertySchema schema = new PropertySchema();
+		List<Event> events = new ArrayList<Event>(count);
+		for (int i = 0; i < count; i++) {
+			long start = START.getMillis() + QUARTER_HOUR
+			        * random.nextInt(DAYS * 24 * 4);
+			long length = QUARTER_HOUR * random.nextInt(13);
+			if (random.nextInt(50) == 0)
+				length = -length;
+			Map<String, List<String>> properties = new HashMap<String, List<String>>();
+			List<String> actors = new ArrayList<String>();
+			for (int j = random.nextInt(5); j > 0; j--)
+				actors.add(actor(random.nextInt(ACTORS)));
+			if (!actors.isEmpty())
+				properties.put("actor", actors);
+			if (random.nextBoolean())
+				properties.put("rating",
+				        Collections.singletonList(random.nextBoolean() ? "PG"
+				                : "R"));
+			events.add(new Event(words(random, 2), start, start + length,
+			        DateTimeZone.UTC, words(random, 3 + random.nextInt(4)),
+			        LOCATIONS[random.nextInt(LOCATIONS.length)], schema,
+			        properties));
+		}
+		return events;
+	}
+
+	public static String actor(int index) {
+		return "Actor " + index;
+	}
+
+	/**
+	 * @return a word of the vocabulary, a piece of one, or a word that
+	 *         never occurs
+	 */
+	public static String keyword(Random random) {
+		String word = WORDS[random.nextInt(WORDS.length)];
+		switch (random.nextInt(4)) {
+		case 0:
+			return word.substring(0, Math.min(word.length(), 1 + random.nextInt(3)));
+		case 1:
+			return word.substring(random.nextInt(word.length()));
+		case 2:
+			return "zzz" + word;
+		default:
+			return word;
+		}
+	}
+
+	private static String words(Random random, int count) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				text.append(' ');
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,85 @@
+package model;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Checks that expanding recurring events is idempotent: the occurrences of
+ * a series do not recur, so expanding an already expanded list or store,
+ * as the week and month outputters do with the model's results, returns
+ * the same events.
+ */
+public class RecurrenceExpanderCheck {
+
+	private static final DateTime START = new DateTime(2012, 3, 5, 9, 0,
+	        DateTimeZone.UTC);
+
+	public static String run() {
+		List<Event> events = new ArrayList<Event>();
+		events.add(series("Daily five", "FREQ=DAILY;COUNT=5"));
+		events.add(single("Once", START.plusDays(1)));
+		events.add(series("Weekly", "RRULE:FREQ=WEEKLY;BYDAY=MO,WE"));
+		DateTime from = START;
+		DateTime to = START.plusWeeks(3);
+
+		List<Event> expanded = RecurrenceExpander.expandToList(events, from,
+		        to);
+		// five dailies, the single event, and Mondays and Wednesdays from
+		// March 5 up to and including March 26
+		check(expanded.size() == 5 + 1 + 7, "occurrences: " + expanded.size());
+		for (Event event : expanded) {
+			check(!RecurrenceExpander.isRecurring(event), event.getTitle()
+			        + " still recurs");
+			check(!event.getPropertyNames().contains(
+			        RecurrenceExpander.RECURRENCE), event.getTitle()
+			        + " kept its rule");
+		}
+
+		List<Event> again = RecurrenceExpander.expandToList(expanded, from, to);
+		check(again.equals(expanded), "list changed on second expansion");
+		List<Event> narrower = RecurrenceExpander.expandToList(expanded,
+		        from.plusDays(2), to.minusDays(2));
+		check(narrower.equals(expanded),
+		        "a second window must not drop or add occurrences");
+
+		EventStore store = new EventStore();
+		store.addAll(events);
+		EventStore expandedStore = RecurrenceExpander.expand(store, from, to);
+		check(sameEvents(expandedStore.getEvents(), expanded),
+		        "store expansion differs from list expansion");
+		check(RecurrenceExpander.expand(expandedStore, from, to) == expandedStore,
+		        "store changed on second expansion");
+		return expanded.size() + " occurrences, expansion is idempotent";
+	}
+
+	private static Event series(String title, String rule) {
+		Map<String, List<String>> properties = new HashMap<String, List<String>>();
+		properties.put(RecurrenceExpander.RECURRENCE,
+		        Collections.singletonList(rule));
+		properties.put("actor", Collections.singletonList("Someone"));
+		return new Event(title, START.getMillis(), START.plusHours(1)
+		        .getMillis(), DateTimeZone.UTC, "", "Room", properties);
+	}
+
+	private static Event single(String title, DateTime start) {
+		return new Event(title, start.getMillis(),
+		        start.plusHours(1).getMillis(), DateTimeZone.UTC, "", "Room",
+		        (Map<String, List<String>>) null);
+	}
+
+	private static boolean sameEvents(List<Event> a, List<Event> b) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++) {
+			if (!a.get(i).getTitle().equals(b.get(i).getTitle())
+			        || a.get(i).getStartMillis() != b.get(i).getStartMillis()
+			        || a.get(i).getEndMillis() != b.get(i).getEndMillis())
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,96 @@
+package model;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import filtering.TimeFilter;
+
+/**
+ * Checks the start time index against TimeFilter scanning the store: the
+ * same non-recurring events must start in every range, while events are
+ * added in batches, after the store is cleared, and when the starts span
+ * too many bits for the packed sort.
+ */
+public class StartTimeIndexCheck {
+
+	private static final int ROUNDS = 200;
+
+	public static String run() {
+		Random random = new Random(19);
+		EventStore store = new EventStore();
+		StartTimeIndex index = new StartTimeIndex(store);
+		for (int batch = 0; batch < 4; batch++) {
+			store.addAll(RandomEvents.generate(batch, 700));
+			store.add(series("Weekly " + batch));
+			compareRanges(store, index, random);
+		}
+
+		store.clear();
+		check(index.getRecurringIds().length == 0
+		        && index.countInRange(Long.MIN_VALUE, Long.MAX_VALUE) == 0,
+		        "the index must start over when the store is cleared");
+		store.addAll(RandomEvents.generate(9, 500));
+		compareRanges(store, index, random);
+
+		// starts far apart force the sort that does not pack them
+		store.add(new Event("Long ago", Long.MIN_VALUE / 2, 0,
+		        DateTimeZone.UTC, "", "", (Map<String, List<String>>) null));
+		store.add(new Event("Far ahead", Long.MAX_VALUE / 2, Long.MAX_VALUE / 2,
+		        DateTimeZone.UTC, "", "", (Map<String, List<String>>) null));
+		compareRanges(store, index, random);
+		check(index.idsInRange(Long.MIN_VALUE, Long.MAX_VALUE).length == store
+		        .size(), "every start is in the whole range");
+		return ROUNDS * 6 + " ranges agree";
+	}
+
+	private static void compareRanges(EventStore store, StartTimeIndex index,
+	        Random random) {
+		Set<Integer> recurring = new HashSet<Integer>();
+		for (int id : index.getRecurringIds()) {
+			check(RecurrenceExpander.isRecurring(store.getEvent(id)),
+			        "event " + id + " is not a series");
+			recurring.add(id);
+		}
+		for (int id = 0; id < store.size(); id++) {
+			check(recurring.contains(id) == RecurrenceExpander
+			        .isRecurring(store.getEvent(id)), "series " + id
+			        + " not listed");
+		}
+		TimeFilter filter = new TimeFilter();
+		for (int round = 0; round < ROUNDS; round++) {
+			DateTime from = RandomEvents.START.plusMinutes(15 * (random
+			        .nextInt(RandomEvents.DAYS * 24 * 4 + 20) - 10));
+			DateTime to = from.plusMinutes(15 * random.nextInt(24 * 4 * 5));
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int id : filter.matchingIds(store, from, to)) {
+				if (!recurring.contains(id))
+					expected.add(id);
+			}
+			int[] ids = index.idsInRange(from.getMillis(), to.getMillis());
+			check(Arrays.equals(ids, toArray(expected)), "range " + from
+			        + " to " + to);
+			check(index.countInRange(from.getMillis(), to.getMillis()) == ids.length,
+			        "count of " + from + " to " + to);
+		}
+	}
+
+	private static Event series(String title) {
+		Map<String, List<String>> properties = new HashMap<String, List<String>>();
+		properties.put(RecurrenceExpander.RECURRENCE,
+		        Collections.singletonList("FREQ=WEEKLY"));
+		return new Event(title, RandomEvents.START.getMillis(),
+		        RandomEvents.START.plusHours(1).getMillis(), DateTimeZone.UTC,
+		        "", "", properties);
+	}
+
+	private static int[] toArray(List<Integer> values) {
+		int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i);
+		return array;
+	}
+}
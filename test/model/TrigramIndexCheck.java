@@ -0,0 +1,61 @@
+package model;
+
+import static model.Checks.check;
+
+import java.util.*;
+
+import filtering.KeywordFilter;
+
+/**
+ * Checks the trigram index against KeywordFilter scanning the store: every
+ * keyword of three or more characters must find the same events, while
+ * events are added in batches and after the store is cleared, and shorter
+ * keywords must be left to the scan.
+ */
+public class TrigramIndexCheck {
+
+	private static final int ROUNDS = 150;
+
+	public static String run() {
+		Random random = new Random(20);
+		EventStore store = new EventStore();
+		TrigramIndex index = new TrigramIndex(store);
+		int looked = 0;
+		for (int batch = 0; batch < 3; batch++) {
+			store.addAll(RandomEvents.generate(batch, 800));
+			looked += compareKeywords(store, index, random);
+		}
+		store.clear();
+		check(index.idsContaining("news").length == 0,
+		        "the index must start over when the store is cleared");
+		store.addAll(RandomEvents.generate(7, 600));
+		looked += compareKeywords(store, index, random);
+		return looked + " keywords agree";
+	}
+
+	/**
+	 * @return how many keywords were long enough to look up
+	 */
+	private static int compareKeywords(EventStore store, TrigramIndex index,
+	        Random random) {
+		KeywordFilter filter = new KeywordFilter();
+		int looked = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			String keyword = RandomEvents.keyword(random);
+			if (random.nextInt(5) == 0) {
+				// across a word boundary
+				keyword = keyword + " "
+				        + RandomEvents.WORDS[random.nextInt(RandomEvents.WORDS.length)];
+			}
+			int[] ids = index.idsContaining(keyword);
+			if (keyword.length() < 3) {
+				check(ids == null, "short keyword " + keyword);
+				continue;
+			}
+			looked++;
+			check(Arrays.equals(ids, filter.matchingIds(store, keyword)),
+			        "keyword '" + keyword + "'");
+		}
+		return looked;
+	}
+}
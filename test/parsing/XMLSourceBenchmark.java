@@ -0,0 +1,57 @@
+package parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures how fast XMLSource and the streaming parsers get through the
+ * files named on the command line
+ */
+public class XMLSourceBenchmark {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final double MEGABYTE = 1024 * 1024;
+
+	/**
+	 * Reports read and parse throughput in MB/s for each file given, where
+	 * a megabyte is counted on the decompressed XML. The read pass opens
+	 * the file the way the parsers do, so .gz, .zip and large mapped files
+	 * each take their own path.
+	 */
+	public static void main(String[] args) throws IOException {
+		ParserRegistry parsers = new ParserRegistry();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		for (String filename : args) {
+			long bytes = 0;
+			long start = System.nanoTime();
+			InputStream in = XMLSource.open(filename);
+			try {
+				int count;
+				while ((count = in.read(buffer)) > 0)
+					bytes += count;
+			} finally {
+				in.close();
+			}
+			double readSeconds = (System.nanoTime() - start) / 1e9;
+
+			int events = 0;
+			start = System.nanoTime();
+			EventIterator iterator = parsers.getParser(filename).iterateEvents(
+			        filename);
+			try {
+				while (iterator.hasNext()) {
+					iterator.next();
+					events++;
+				}
+			} finally {
+				iterator.close();
+			}
+			double parseSeconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("%s: %.1f MB, read %.1f MB/s, parsed %d events"
+			        + " at %.1f MB/s%n", filename, bytes / MEGABYTE, bytes
+			        / MEGABYTE / readSeconds, events, bytes / MEGABYTE
+			        / parseSeconds);
+		}
+	}
+}